@@ -2,12 +2,17 @@ package io.github.icrazyblaze.twitchmod;
 
 import io.github.icrazyblaze.twitchmod.chat.ChatCommands;
 import io.github.icrazyblaze.twitchmod.chat.ChatPicker;
+import io.github.icrazyblaze.twitchmod.chat.ViewerRegistry;
 import io.github.icrazyblaze.twitchmod.config.ConfigManager;
 import io.github.icrazyblaze.twitchmod.network.PacketHandler;
 import io.github.icrazyblaze.twitchmod.network.packet.MessageboxPacket;
 import io.github.icrazyblaze.twitchmod.util.EffectInstanceHelper;
+import io.github.icrazyblaze.twitchmod.util.ModState;
 import io.github.icrazyblaze.twitchmod.util.PlayerHelper;
-import io.github.icrazyblaze.twitchmod.util.timers.TimerSystem;
+import io.github.icrazyblaze.twitchmod.util.world.BlockEditBatch;
+import io.github.icrazyblaze.twitchmod.util.timers.TickScheduler;
+import io.github.icrazyblaze.twitchmod.util.world.BlockEditJournal;
+import io.github.icrazyblaze.twitchmod.util.world.BlockEditTask;
 import net.minecraft.ChatFormatting;
 import net.minecraft.client.resources.language.I18n;
 import net.minecraft.core.BlockPos;
@@ -66,8 +71,6 @@ import java.text.SimpleDateFormat;
 import java.util.*;
 import java.util.concurrent.ThreadLocalRandom;
 
-import static io.github.icrazyblaze.twitchmod.util.PlayerHelper.player;
-
 /**
  * This class contains every method used by commands registered in the ChatPicker class.
  *
@@ -82,7 +85,6 @@ public class CommandHandlers {
     public static boolean destroyWorkbenchesOnInteract = false;
     public static ArrayList<String> messagesList = new ArrayList<>();
     private static ResourceLocation[] lootArray = new ResourceLocation[0];
-    private static boolean previousDeathTimerState = false;
 
     static {
         try {
@@ -94,7 +96,7 @@ public class CommandHandlers {
 
     public static ResourceLocation[] getLootTables() {
 
-        LootTables obj = player().getServer().getLootTables();
+        LootTables obj = PlayerHelper.defaultServer.getLootTables();
         Set<ResourceLocation> tables = obj.getIds();
 
         List<ResourceLocation> tablesCopy = new ArrayList<>(tables);
@@ -105,25 +107,23 @@ public class CommandHandlers {
     }
 
 
-    public static void rollTheDice(String sender) {
+    public static void rollTheDice(int pipeline, int viewer) {
 
         List<String> commands = ChatCommands.getRegisteredCommands();
-        String randomCommand = commands.get(rand.nextInt(commands.toArray().length));
-        broadcastMessage(new TranslatableComponent("gui.twitchmod.dice_rolled", sender));
-        ChatPicker.checkChat(randomCommand, sender);
+        String randomCommand = commands.get(rand.nextInt(commands.size()));
+        broadcastMessage(new TranslatableComponent("gui.twitchmod.dice_rolled", ViewerRegistry.getName(viewer)));
+        ChatPicker.checkChat(pipeline, randomCommand, viewer, 1.0, false);
 
     }
 
-    public static void giveRandomPotionEffect() {
+    public static void giveRandomPotionEffect(ServerPlayer player) {
 
         MobEffectInstance effect = EffectInstanceHelper.getRandomEffect();
-        player().addEffect(effect);
+        player.addEffect(effect);
 
     }
 
-    public static void addPotionEffects(MobEffectInstance... effectInstances) {
-
-        ServerPlayer player = player();
+    public static void addPotionEffects(ServerPlayer player, MobEffectInstance... effectInstances) {
 
         for (MobEffectInstance effect : effectInstances) {
             player.addEffect(effect);
@@ -131,30 +131,47 @@ public class CommandHandlers {
 
     }
 
-    public static void setBlock(BlockPos bpos, BlockState state) {
-        player().level.setBlockAndUpdate(bpos, state);
+    public static void setBlock(Level level, BlockPos bpos, BlockState state) {
+
+        BlockState oldState = level.getBlockState(bpos);
+        CompoundTag oldBlockEntity = BlockEditJournal.saveBlockEntity(level, bpos);
+
+        if (level.setBlockAndUpdate(bpos, state)) {
+            BlockEditJournal.record(level, bpos, oldState, oldBlockEntity, state);
+        }
+
+    }
+
+    /**
+     * Use a batch to change more than one block at a time, so they are sent to players together.
+     *
+     * @see BlockEditBatch
+     */
+    public static BlockEditBatch editBlocks(Level level) {
+        return new BlockEditBatch(level);
     }
 
+    public static BlockEditBatch editBlocks(Level level, int flags) {
+        return new BlockEditBatch(level, flags);
+    }
 
-    public static void setOnFire() {
 
-        ServerPlayer player = player();
+    public static void setOnFire(ServerPlayer player) {
 
         BlockPos bpos = player.blockPosition();
 
         BlockState bposState = player.level.getBlockState(bpos);
 
         if (bposState == Blocks.AIR.defaultBlockState()) {
-            setBlock(bpos, Blocks.FIRE.defaultBlockState());
+            setBlock(player.level, bpos, Blocks.FIRE.defaultBlockState());
         }
 
         player.setSecondsOnFire(10);
 
     }
 
-    public static void setRainAndThunder() {
+    public static void setRainAndThunder(ServerPlayer player) {
 
-        ServerPlayer player = player();
         player.level.getLevelData().setRaining(true);
 
         if (!player.level.isClientSide()) {
@@ -164,13 +181,13 @@ public class CommandHandlers {
 
     public static void setDifficulty(Difficulty difficulty) {
 
-        Objects.requireNonNull(player().getServer()).setDifficulty(difficulty, false);
+        PlayerHelper.defaultServer.setDifficulty(difficulty, false);
 
     }
 
     public static void setTime(long time) {
 
-        Iterable<ServerLevel> worlds = player().server.getAllLevels();
+        Iterable<ServerLevel> worlds = PlayerHelper.defaultServer.getAllLevels();
 
         for (ServerLevel world : worlds) {
             world.setDayTime(time);
@@ -178,9 +195,7 @@ public class CommandHandlers {
 
     }
 
-    public static void drainHealth() {
-
-        ServerPlayer player = player();
+    public static void drainHealth(ServerPlayer player) {
 
         // Half the player's health
         float halfhealth = player.getHealth() / 2;
@@ -194,9 +209,7 @@ public class CommandHandlers {
     }
 
 
-    public static void setSpawn() {
-
-        ServerPlayer player = player();
+    public static void setSpawn(ServerPlayer player) {
 
         BlockPos bpos = new BlockPos(player.getX(), player.getY(), player.getZ());
         // SetSpawn
@@ -204,120 +217,108 @@ public class CommandHandlers {
 
     }
 
-    public static void deathTimer(int seconds) {
+    public static void deathTimer(int pipeline, ServerPlayer player, int seconds) {
 
-        if (ChatPicker.instantCommands) {
+        if (ModState.get().instantCommands(pipeline)) {
             return;
         }
 
-        TimerSystem.deathTimerSeconds = seconds;
-        TimerSystem.deathTimerEnabled = true;
+        ModState.update(state -> state.withDeathTimer(pipeline, true, seconds));
 
-        player().displayClientMessage(new TranslatableComponent("gui.twitchmod.alert_deathtimer", seconds).withStyle(ChatFormatting.DARK_RED), true);
+        player.displayClientMessage(new TranslatableComponent("gui.twitchmod.alert_deathtimer", seconds).withStyle(ChatFormatting.DARK_RED), true);
 
     }
 
-    public static void frenzyTimer(int seconds) {
+    public static void frenzyTimer(int pipeline, ServerPlayer player, int seconds) {
 
-        if (ChatPicker.instantCommands || !ConfigManager.ENABLE_FRENZY.get()) {
+        if (ModState.get().instantCommands(pipeline) || !ConfigManager.ENABLE_FRENZY.get()) {
             return;
         }
 
-        TimerSystem.frenzyTimerSeconds = seconds;
-        ChatPicker.instantCommands = true;
+        ModState.update(state -> state.withDeathTimerPaused(pipeline).withFrenzyTimer(pipeline, true, seconds));
 
-        previousDeathTimerState = TimerSystem.deathTimerEnabled;
-        TimerSystem.deathTimerEnabled = false;
-
-        player().displayClientMessage(new TranslatableComponent("gui.twitchmod.alert_frenzymode", seconds).withStyle(ChatFormatting.GOLD), true);
+        player.displayClientMessage(new TranslatableComponent("gui.twitchmod.alert_frenzymode", seconds).withStyle(ChatFormatting.GOLD), true);
 
     }
 
-    public static void graceTimer(int seconds) {
+    public static void graceTimer(int pipeline, ServerPlayer player, int seconds) {
 
-        if (ChatPicker.instantCommands) {
+        if (ModState.get().instantCommands(pipeline)) {
             return;
         }
 
-        ChatPicker.enabled = false;
-        TimerSystem.peaceTimerSeconds = seconds;
-        TimerSystem.peaceTimerEnabled = true;
-
-        previousDeathTimerState = TimerSystem.deathTimerEnabled;
-        TimerSystem.deathTimerEnabled = false;
+        ModState.update(state -> state.withDeathTimerPaused(pipeline).withPeaceTimer(pipeline, true, seconds));
 
-        player().displayClientMessage(new TranslatableComponent("gui.twitchmod.alert_peacetimer", seconds).withStyle(ChatFormatting.AQUA), true);
+        player.displayClientMessage(new TranslatableComponent("gui.twitchmod.alert_peacetimer", seconds).withStyle(ChatFormatting.AQUA), true);
 
     }
 
-    public static void disableGraceTimer() {
+    /**
+     * @param player the player to tell, or null if nobody the pipeline targets is online
+     */
+    public static void disableGraceTimer(int pipeline, ServerPlayer player) {
 
-        ChatPicker.enabled = true;
-        TimerSystem.peaceTimerEnabled = false;
-        TimerSystem.deathTimerEnabled = previousDeathTimerState;
+        ModState.update(state -> state.withPeaceTimer(pipeline, false, state.peaceTimerSeconds(pipeline)).withDeathTimerResumed(pipeline));
 
-        player().displayClientMessage(new TranslatableComponent("gui.twitchmod.commands_enabled").withStyle(ChatFormatting.AQUA), true);
+        if (player != null) {
+            player.displayClientMessage(new TranslatableComponent("gui.twitchmod.commands_enabled").withStyle(ChatFormatting.AQUA), true);
+        }
 
     }
 
-    public static void disableFrenzyTimer() {
+    /**
+     * @param player the player to tell, or null if nobody the pipeline targets is online
+     */
+    public static void disableFrenzyTimer(int pipeline, ServerPlayer player) {
+
+        ModState.update(state -> state.withFrenzyTimer(pipeline, false, state.frenzyTimerSeconds(pipeline)).withDeathTimerResumed(pipeline));
 
-        ChatPicker.instantCommands = false;
-        TimerSystem.deathTimerEnabled = previousDeathTimerState;
-        player().displayClientMessage(new TranslatableComponent("gui.twitchmod.frenzy_disabled").withStyle(ChatFormatting.GOLD), true);
+        if (player != null) {
+            player.displayClientMessage(new TranslatableComponent("gui.twitchmod.frenzy_disabled").withStyle(ChatFormatting.GOLD), true);
+        }
 
     }
 
-    public static void floorIsLava() {
-
-        ServerPlayer player = player();
+    public static void floorIsLava(ServerPlayer player) {
 
         BlockPos bpos = new BlockPos(player.getX(), player.getY() - 1, player.getZ());
-        setBlock(bpos, Blocks.LAVA.defaultBlockState());
+        setBlock(player.level, bpos, Blocks.LAVA.defaultBlockState());
 
     }
 
-    public static void placeWater() {
-
-        ServerPlayer player = player();
+    public static void placeWater(ServerPlayer player) {
 
         BlockPos bpos = player.blockPosition();
-        setBlock(bpos, Blocks.WATER.defaultBlockState());
+        setBlock(player.level, bpos, Blocks.WATER.defaultBlockState());
 
     }
 
-    public static void placeSponge() {
-
-        ServerPlayer player = player();
+    public static void placeSponge(ServerPlayer player) {
 
         BlockPos bpos = new BlockPos(player.getX(), player.getY(), player.getZ());
 
-        setBlock(bpos, Blocks.SPONGE.defaultBlockState());
+        setBlock(player.level, bpos, Blocks.SPONGE.defaultBlockState());
 
     }
 
-    public static void spawnAnvil() {
-
-        ServerPlayer player = player();
+    public static void spawnAnvil(ServerPlayer player) {
 
         BlockPos bpos = new BlockPos(player.getX(), player.getY() + 16, player.getZ());
 
-        setBlock(bpos, Blocks.ANVIL.defaultBlockState());
+        setBlock(player.level, bpos, Blocks.ANVIL.defaultBlockState());
 
     }
 
-    public static void placeCobweb() {
-
-        ServerPlayer player = player();
+    public static void placeCobweb(ServerPlayer player) {
 
-        setBlock(player.blockPosition().above(), Blocks.COBWEB.defaultBlockState());
-        setBlock(player.blockPosition(), Blocks.COBWEB.defaultBlockState());
+        editBlocks(player.level)
+                .set(player.blockPosition().above(), Blocks.COBWEB.defaultBlockState())
+                .set(player.blockPosition(), Blocks.COBWEB.defaultBlockState())
+                .apply();
 
     }
 
-    public static void spawnMob(Entity ent) {
-
-        ServerPlayer player = player();
+    public static void spawnMob(ServerPlayer player, Entity ent) {
 
         Vec3 lookVector = player.getLookAngle();
 
@@ -331,24 +332,21 @@ public class CommandHandlers {
     }
 
 
-    public static void pigmanScare() {
-        playSound(SoundEvents.ZOMBIFIED_PIGLIN_ANGRY, SoundSource.HOSTILE, 2.0F, ((rand.nextFloat() - rand.nextFloat()) * 0.2F + 1.0F) * 1.8F);
+    public static void pigmanScare(ServerPlayer player) {
+        playSound(player, SoundEvents.ZOMBIFIED_PIGLIN_ANGRY, SoundSource.HOSTILE, 2.0F, ((rand.nextFloat() - rand.nextFloat()) * 0.2F + 1.0F) * 1.8F);
     }
 
-    public static void elderGuardianScare() {
-        player().connection.send(new ClientboundGameEventPacket(ClientboundGameEventPacket.GUARDIAN_ELDER_EFFECT, 1.0F));
+    public static void elderGuardianScare(ServerPlayer player) {
+        player.connection.send(new ClientboundGameEventPacket(ClientboundGameEventPacket.GUARDIAN_ELDER_EFFECT, 1.0F));
     }
 
-    public static void playSound(SoundEvent sound, SoundSource category, float volume, float pitch) {
+    public static void playSound(ServerPlayer player, SoundEvent sound, SoundSource category, float volume, float pitch) {
 
-        ServerPlayer player = player();
         player.level.playSound(null, player.getX(), player.getY(), player.getZ(), sound, category, volume, pitch);
 
     }
 
-    public static void spawnFireball() {
-
-        ServerPlayer player = player();
+    public static void spawnFireball(ServerPlayer player) {
 
         LargeFireball ent = new LargeFireball(player.level, player, 0D, 0D, 0D, 4);
 
@@ -359,18 +357,15 @@ public class CommandHandlers {
 
     }
 
-    public static void spawnLightning() {
+    public static void spawnLightning(ServerPlayer player) {
 
-        ServerPlayer player = player();
         LightningBolt ent = new LightningBolt(EntityType.LIGHTNING_BOLT, player.level);
         ent.setPos(player.getX(), player.getY(), player.getZ());
         player.level.addFreshEntity(ent);
 
     }
 
-    public static void spawnArmorStand() {
-
-        ServerPlayer player = player();
+    public static void spawnArmorStand(ServerPlayer player) {
 
         double d0 = player.getX();
         double d1 = player.getY();
@@ -384,28 +379,22 @@ public class CommandHandlers {
         // Give the stand a custom player head
         ItemStack item = new ItemStack(Items.PLAYER_HEAD, 1);
 
-        // Add NBT if we can
-        if (PlayerHelper.getUsername() != null) {
-
-            CompoundTag nbt = item.getOrCreateTag();
-            nbt.putString("SkullOwner", PlayerHelper.getUsername());
-            item.save(nbt);
-
-        }
+        // Add NBT for the player's own head
+        CompoundTag nbt = item.getOrCreateTag();
+        nbt.putString("SkullOwner", player.getGameProfile().getName());
+        item.save(nbt);
 
         armorstandentity.setItemSlot(EquipmentSlot.HEAD, item);
 
         // Access transformer needed for this
         armorstandentity.setShowArms(true);
 
-        spawnMobBehind(armorstandentity);
-        playSound(SoundEvents.AMBIENT_CAVE, SoundSource.AMBIENT, 1, 1);
+        spawnMobBehind(player, armorstandentity);
+        playSound(player, SoundEvents.AMBIENT_CAVE, SoundSource.AMBIENT, 1, 1);
 
     }
 
-    public static void spawnMobBehind(Entity ent) {
-
-        ServerPlayer player = player();
+    public static void spawnMobBehind(ServerPlayer player, Entity ent) {
 
         Vec3 lookVector = player.getLookAngle();
 
@@ -418,9 +407,7 @@ public class CommandHandlers {
 
     }
 
-    public static void breakBlock() {
-
-        ServerPlayer player = player();
+    public static void breakBlock(ServerPlayer player) {
 
         int range = 64;
 
@@ -435,14 +422,16 @@ public class CommandHandlers {
         }
 
         BlockPos bpos = rayTrace.getBlockPos();
+        BlockState oldState = player.level.getBlockState(bpos);
+        CompoundTag oldBlockEntity = BlockEditJournal.saveBlockEntity(player.level, bpos);
 
-        player.level.destroyBlock(bpos, false);
+        if (player.level.destroyBlock(bpos, false)) {
+            BlockEditJournal.record(player.level, bpos, oldState, oldBlockEntity, player.level.getBlockState(bpos));
+        }
 
     }
 
-    public static void infestBlock() {
-
-        ServerPlayer player = player();
+    public static void infestBlock(ServerPlayer player) {
 
         int range = 64;
 
@@ -459,33 +448,55 @@ public class CommandHandlers {
         BlockPos bpos = rayTrace.getBlockPos();
         BlockState thisBlock = player.level.getBlockState(bpos);
 
-        setBlock(bpos, InfestedBlock.infestedStateByHost(thisBlock));
+        setBlock(player.level, bpos, InfestedBlock.infestedStateByHost(thisBlock));
 
     }
 
-    public static void surroundPlayer(BlockState block) {
+    public static void surroundPlayer(ServerPlayer player, BlockState block) {
 
-        ServerPlayer player = player();
         BlockPos playerPos = player.blockPosition();
 
         BlockPos[] positions = {playerPos.north(), playerPos.east(), playerPos.south(), playerPos.west()};
+        BlockEditBatch batch = editBlocks(player.level);
 
         for (BlockPos bpos : positions) {
-            setBlock(bpos, block);
-            setBlock(bpos.above(), block);
+            batch.set(bpos, block);
+            batch.set(bpos.above(), block);
         }
 
-        setBlock(playerPos.above().above(), block);
+        batch.set(playerPos.above().above(), block);
 
         if (player.level.getBlockState(playerPos.below()) == Blocks.AIR.defaultBlockState()) {
-            setBlock(playerPos.below(), block);
+            batch.set(playerPos.below(), block);
         }
 
+        batch.apply();
+
     }
 
-    public static void dropItem() { // Thanks Amoo!
+    /**
+     * Builds a dome around the player over the next few ticks, replacing only air so nothing gets broken.
+     */
+    public static void buildDome(ServerPlayer player, BlockState block, int radius) {
+
+        BlockPos centre = player.blockPosition();
+        Level level = player.level;
+        int inner = (radius - 1) * (radius - 1);
+        int outer = radius * radius;
+
+        Iterator<BlockPos> positions = BlockPos.betweenClosed(centre.offset(-radius, 0, -radius), centre.offset(radius, radius, radius)).iterator();
+
+        TickScheduler.schedule(new BlockEditTask(level, positions, bpos -> {
+
+            int distance = (int) bpos.distSqr(centre);
+            return distance > inner && distance <= outer && level.getBlockState(bpos).isAir() ? block : null;
+
+        }), () -> player.displayClientMessage(new TranslatableComponent("gui.twitchmod.alert_dome"), true));
+
+    }
+
+    public static void dropItem(ServerPlayer player) { // Thanks Amoo!
 
-        ServerPlayer player = player();
         ItemStack currentItem = player.getInventory().getSelected();
 
         if (currentItem != ItemStack.EMPTY) {
@@ -497,9 +508,8 @@ public class CommandHandlers {
 
     }
 
-    public static void changeDurability(boolean repairItem) {
+    public static void changeDurability(ServerPlayer player, boolean repairItem) {
 
-        ServerPlayer player = player();
         ItemStack currentItem = player.getInventory().getSelected();
 
         int damageAmount = rand.nextInt(currentItem.getMaxDamage() / 3);
@@ -517,28 +527,25 @@ public class CommandHandlers {
 
     }
 
-    public static void removeRandomItemStack() {
+    public static void removeRandomItemStack(ServerPlayer player) {
 
-        ServerPlayer player = player();
+        ItemStack randomItem = ItemStack.EMPTY;
+        int seen = 0;
 
-        // Prevent loop
-        if (player.getInventory().isEmpty()) {
-            return;
-        }
+        // Choose a random non-empty slot in one pass, so an empty inventory can't loop
+        for (int i = 0; i < player.getInventory().getContainerSize(); i++) {
 
-        // Delete a random item
-        int r = rand.nextInt(player.getInventory().getContainerSize());
+            ItemStack item = player.getInventory().getItem(i);
 
-        ItemStack randomItem = player.getInventory().getItem(r);
+            if (!item.isEmpty() && rand.nextInt(++seen) == 0) {
+                randomItem = item;
+            }
 
-        if (randomItem != ItemStack.EMPTY) {
+        }
 
+        // Delete a random item
+        if (!randomItem.isEmpty()) {
             player.getInventory().removeItem(randomItem);
-
-        } else {
-
-            removeRandomItemStack();
-
         }
 
     }
@@ -567,24 +574,22 @@ public class CommandHandlers {
 
     }
 
-    public static void giveAndRemoveRandom() {
+    public static void giveAndRemoveRandom(ServerPlayer player) {
 
         ItemStack stack = getRandomItemStack(true);
 
         // Remove the random item here to prevent an item being removed and no item being given to the player
-        removeRandomItemStack();
+        removeRandomItemStack(player);
 
-        player().addItem(stack);
+        player.addItem(stack);
 
     }
 
-    public static void itemRoulette(String sender) {
-
-        ServerPlayer player = player();
+    public static void itemRoulette(ServerPlayer player, String sender) {
 
         if (!player.getInventory().isEmpty()) {
 
-            giveAndRemoveRandom();
+            giveAndRemoveRandom(player);
 
             // Show chat message
             player.displayClientMessage(new TranslatableComponent("gui.twitchmod.alert_roulette", sender).withStyle(ChatFormatting.RED), true);
@@ -595,9 +600,7 @@ public class CommandHandlers {
 
     // Thank you to ChiKitsune for writing this code!
     // https://github.com/ChiKitsune/SwapThings/blob/master/src/main/java/chikitsune/swap_things/commands/ShuffleInventory.java
-    public static void shuffleInventory(String sender) {
-
-        ServerPlayer player = player();
+    public static void shuffleInventory(ServerPlayer player, String sender) {
 
         ItemStack tempItem;
         int tempRandNum;
@@ -620,9 +623,7 @@ public class CommandHandlers {
 
     }
 
-    public static void renameItem(String name) {
-
-        ServerPlayer player = player();
+    public static void renameItem(ServerPlayer player, String name) {
 
         if (!player.getInventory().isEmpty()) {
 
@@ -658,9 +659,7 @@ public class CommandHandlers {
 
     }
 
-    public static void enchantItem() {
-
-        ServerPlayer player = player();
+    public static void enchantItem(ServerPlayer player) {
 
         if (!player.getInventory().isEmpty()) {
 
@@ -697,9 +696,7 @@ public class CommandHandlers {
 
     }
 
-    public static void curseArmour() {
-
-        ServerPlayer player = player();
+    public static void curseArmour(ServerPlayer player) {
 
         if (!player.getInventory().isEmpty()) {
 
@@ -720,9 +717,7 @@ public class CommandHandlers {
 
     }
 
-    public static void pumpkin() {
-
-        ServerPlayer player = player();
+    public static void pumpkin(ServerPlayer player) {
 
         if (!player.getInventory().isEmpty()) {
 
@@ -745,19 +740,15 @@ public class CommandHandlers {
 
     }
 
-    public static void toggleCrouch() {
-        ServerPlayer player = player();
+    public static void toggleCrouch(ServerPlayer player) {
         player.setShiftKeyDown(!player.isCrouching());
     }
 
-    public static void toggleSprint() {
-        ServerPlayer player = player();
+    public static void toggleSprint(ServerPlayer player) {
         player.setSprinting(!player.isSprinting());
     }
 
-    public static void dismount() {
-
-        ServerPlayer player = player();
+    public static void dismount(ServerPlayer player) {
 
         if (player.isPassenger()) {
             player.stopRiding();
@@ -768,9 +759,8 @@ public class CommandHandlers {
 
     }
 
-    public static void realTeleport(){
+    public static void realTeleport(ServerPlayer player){
 
-        ServerPlayer player = player();
         Level world = player.level;
 
         // Code taken from ChorusFruitItem in vanilla
@@ -798,9 +788,8 @@ public class CommandHandlers {
         }
 
     }
-    public static void chorusTeleport() {
+    public static void chorusTeleport(ServerPlayer player) {
 
-        ServerPlayer player = player();
         Level world = player.level;
 
         // Code taken from ChorusFruitItem in vanilla
@@ -828,35 +817,33 @@ public class CommandHandlers {
         }
     }
 
-    public static void showMessagebox(String message) {
+    public static void showMessagebox(ServerPlayer player, String message) {
 
         // Then trim the string to the proper length (324 chars max)
         message = message.substring(0, Math.min(message.length(), 324));
 
-        PacketHandler.INSTANCE.sendTo(new MessageboxPacket(message), player().connection.getConnection(), NetworkDirection.PLAY_TO_CLIENT);
+        PacketHandler.INSTANCE.sendTo(new MessageboxPacket(message), player.connection.getConnection(), NetworkDirection.PLAY_TO_CLIENT);
 
     }
 
-    public static void startWritingBook() {
+    public static void startWritingBook(ServerPlayer player) {
 
         ChatPicker.tempChatLog.clear();
-        ChatPicker.logMessages = true;
-        player().displayClientMessage(new TextComponent("gui.twitchmod.alert_book_start").withStyle(ChatFormatting.LIGHT_PURPLE), true);
+        ModState.update(state -> state.withLogMessages(true));
+        player.displayClientMessage(new TextComponent("gui.twitchmod.alert_book_start").withStyle(ChatFormatting.LIGHT_PURPLE), true);
 
     }
 
-    public static void createBook(List<String> text) {
+    public static void createBook(ServerPlayer player, List<String> text) {
 
         try {
 
-            ServerPlayer player = player();
-
             ItemStack itemStack = new ItemStack(Items.WRITTEN_BOOK, 1);
             CompoundTag nbt = itemStack.getOrCreateTag();
 
             ListTag pages = new ListTag();
 
-            nbt.putString("author", PlayerHelper.getUsername());
+            nbt.putString("author", player.getGameProfile().getName());
             nbt.putString("title", I18n.get("gui.twitchmod.chat_log", new SimpleDateFormat().format(new Date())));
 
             for (String str : text) {
@@ -875,9 +862,7 @@ public class CommandHandlers {
 
     }
 
-    public static void placeSign(String message) {
-
-        ServerPlayer player = player();
+    public static void placeSign(ServerPlayer player, String message) {
 
         // Split every 15 characters
         int maxlength = 15;
@@ -889,42 +874,39 @@ public class CommandHandlers {
         // Rotate the sign to face the player
         int playerFace = Mth.floor((double) ((player.getYRot() + 180.0F) * 16.0F / 360.0F) + 0.5D) & 15;
 
-        // Set block state to air before placing sign
-        setBlock(bpos, Blocks.AIR.defaultBlockState());
-
-        // Place the sign with rotation
-        player.level.setBlock(bpos, Blocks.OAK_SIGN.defaultBlockState().setValue(BlockStateProperties.ROTATION_16, playerFace), 11);
+        // Place the sign with rotation, and a light source below the sign for reading at night (thanks Gaiet)
+        editBlocks(player.level)
+                .set(bpos, Blocks.OAK_SIGN.defaultBlockState().setValue(BlockStateProperties.ROTATION_16, playerFace))
+                .set(bposBelow, Blocks.GLOWSTONE.defaultBlockState())
+                .apply();
 
         BlockEntity blockEntity = player.level.getBlockEntity(bpos);
 
         // Thanks for the new code Commoble!
         if (blockEntity instanceof SignBlockEntity sign) {
 
-            int lines = splitMessage.length;
-
-            for (int i = 0; i < lines; i++) {
-                sign.setMessage(i, new TextComponent(splitMessage[i]));
+            // Write every line, as the same sign may already be standing here with a longer message
+            for (int i = 0; i < SignBlockEntity.LINES; i++) {
+                sign.setMessage(i, new TextComponent(i < splitMessage.length ? splitMessage[i] : ""));
             }
 
-        }
-
+            // The block might not have changed, so send the new text to players here
+            sign.setChanged();
+            player.level.sendBlockUpdated(bpos, sign.getBlockState(), sign.getBlockState(), Block.UPDATE_CLIENTS);
 
-        // Add a light source below the sign for reading at night (thanks Gaiet)
-        setBlock(bposBelow, Blocks.GLOWSTONE.defaultBlockState());
+        }
 
     }
 
 
-    public static void placeChest() {
-
-        ServerPlayer player = player();
+    public static void placeChest(ServerPlayer player) {
 
         BlockPos bpos = player.blockPosition();
         Block bposBlock = player.level.getBlockState(bpos).getBlock();
 
         // Make sure we don't replace any chests
         if (bposBlock != Blocks.CHEST && bposBlock != Blocks.TRAPPED_CHEST) {
-            setBlock(bpos, Blocks.CHEST.defaultBlockState());
+            setBlock(player.level, bpos, Blocks.CHEST.defaultBlockState());
         }
 
         BlockEntity blockEntity = player.level.getBlockEntity(bpos);
@@ -960,13 +942,14 @@ public class CommandHandlers {
 
     /**
      * This method sends a message to everyone on a server.
+     * Bots call this from their own threads, so it uses the cached players rather than searching the player list.
      */
     public static void broadcastMessage(MutableComponent message) {
 
-        ServerPlayer player = player();
-
         try {
-            player.sendMessage(message, player.getUUID());
+            for (ServerPlayer player : PlayerHelper.getPlayers()) {
+                player.sendMessage(message, player.getUUID());
+            }
         } catch (Exception e) {
             Main.logger.error(e);
         }
@@ -984,7 +967,9 @@ public class CommandHandlers {
             double dy = event.getPos().getY();
             double dz = event.getPos().getZ();
 
-            player().level.explode(null, dx, dy, dz, 4.0F, Explosion.BlockInteraction.BREAK);
+            if (event.getWorld() instanceof Level level) {
+                level.explode(null, dx, dy, dz, 4.0F, Explosion.BlockInteraction.BREAK);
+            }
 
             oresExplode = false;
 
@@ -997,10 +982,15 @@ public class CommandHandlers {
 
         BlockPos bpos = event.getPos();
 
-        if (placeBedrockOnBreak && !event.getWorld().isClientSide()) {
+        if (placeBedrockOnBreak && event.getWorld() instanceof Level level && !level.isClientSide()) {
 
             event.setCanceled(true);
-            event.getWorld().setBlock(bpos, Blocks.BEDROCK.defaultBlockState(), 2);
+
+            // Chat asked for this earlier, so it can be undone like any other command
+            BlockEditJournal.startChange();
+            editBlocks(level, Block.UPDATE_CLIENTS).set(bpos, Blocks.BEDROCK.defaultBlockState()).apply();
+            BlockEditJournal.endChange();
+
             placeBedrockOnBreak = false;
 
         }
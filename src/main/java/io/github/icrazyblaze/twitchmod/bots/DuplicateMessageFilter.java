@@ -0,0 +1,164 @@
+package io.github.icrazyblaze.twitchmod.bots;
+
+import java.util.Arrays;
+
+/**
+ * Remembers which messages each viewer has recently sent, so that copy-paste floods (e.g. during raids) are only shown and counted once.
+ * Duplicates are dropped on the bot's thread, before the message is shown in-game or queued for the server.
+ * <p>
+ * Memory is fixed however much chat arrives: messages are remembered in two Bloom filters (bit arrays where each message sets a few bits),
+ * one for the current window and one for the previous window. When a window ends the previous filter is cleared and becomes the current one,
+ * so a message is remembered for between one and two windows. A Bloom filter can mistake a new message for one it has seen,
+ * but never the other way round, so at the default size a tiny fraction of new messages may be dropped while no duplicate gets through.
+ * <p>
+ * Messages are compared after trimming, collapsing spaces and ignoring case, so "!creeper" and " !CREEPER " count as the same message.
+ *
+ * @see BotCommon#duplicateMessageFilter
+ * @since 4.1.0
+ */
+public class DuplicateMessageFilter {
+
+    private final int hashes;
+    private final int bitMask;
+    private long[] current;
+    private long[] previous;
+    private long windowStart = Long.MIN_VALUE;
+
+    /**
+     * @param hashes how many bits each message sets
+     * @param bits   how many bits are in each filter, rounded up to a power of two
+     */
+    public DuplicateMessageFilter(int hashes, int bits) {
+
+        int roundedBits = Math.max(64, Integer.highestOneBit(Math.max(1, bits - 1)) << 1);
+
+        this.hashes = hashes;
+        this.bitMask = roundedBits - 1;
+        this.current = new long[roundedBits / 64];
+        this.previous = new long[roundedBits / 64];
+
+    }
+
+    /**
+     * Remembers a message from a viewer, and checks whether they already sent it within the window.
+     *
+     * @param viewer      the viewer's key, see {@link BotCommon#viewerKey}
+     * @param message     the message
+     * @param windowNanos how long messages are remembered for, 0 to allow every message
+     * @param now         the current {@link System#nanoTime()}
+     * @return true if the viewer already sent the message
+     */
+    public synchronized boolean isDuplicate(int viewer, String message, long windowNanos, long now) {
+
+        if (windowNanos <= 0) {
+            return false;
+        }
+
+        advanceWindow(windowNanos, now);
+
+        long hash = hash(viewer, message);
+        int firstHash = (int) hash;
+        int secondHash = (int) (hash >>> 32) | 1;
+
+        boolean inCurrent = true;
+        boolean inPrevious = true;
+
+        for (int i = 0; i < hashes; i++) {
+
+            int bit = (firstHash + i * secondHash) & bitMask;
+            long mask = 1L << bit;
+
+            if ((current[bit >>> 6] & mask) == 0) {
+                inCurrent = false;
+                current[bit >>> 6] |= mask;
+            }
+            if ((previous[bit >>> 6] & mask) == 0) {
+                inPrevious = false;
+            }
+
+        }
+
+        return inCurrent || inPrevious;
+
+    }
+
+    public synchronized void clear() {
+
+        Arrays.fill(current, 0);
+        Arrays.fill(previous, 0);
+        windowStart = Long.MIN_VALUE;
+
+    }
+
+    private void advanceWindow(long windowNanos, long now) {
+
+        if (windowStart == Long.MIN_VALUE) {
+            windowStart = now;
+            return;
+        }
+
+        long elapsed = now - windowStart;
+
+        if (elapsed < windowNanos) {
+            return;
+        }
+
+        if (elapsed < windowNanos * 2) {
+
+            // The current filter becomes the previous one, reusing the old array for the new window
+            long[] swap = previous;
+            previous = current;
+            current = swap;
+            Arrays.fill(current, 0);
+            windowStart += windowNanos;
+
+        } else {
+
+            // Nothing has been remembered for over a window, so everything can be forgotten
+            Arrays.fill(current, 0);
+            Arrays.fill(previous, 0);
+            windowStart = now;
+
+        }
+
+    }
+
+    private static long hash(int viewer, String message) {
+
+        long hash = (viewer + 1) * 0x9E3779B97F4A7C15L;
+
+        // Hash the message as if it was trimmed, lowercased and had runs of spaces collapsed, without making a new string
+        boolean started = false;
+        boolean pendingSpace = false;
+
+        for (int i = 0; i < message.length(); i++) {
+
+            char c = message.charAt(i);
+
+            if (Character.isWhitespace(c)) {
+                pendingSpace = started;
+                continue;
+            }
+
+            if (pendingSpace) {
+                hash = (hash ^ ' ') * 0x100000001B3L;
+                pendingSpace = false;
+            }
+
+            hash = (hash ^ Character.toLowerCase(c)) * 0x100000001B3L;
+            started = true;
+
+        }
+
+        // Mix the bits so that both halves of the hash are usable
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        hash *= 0xC4CEB9FE1A85EC53L;
+        hash ^= hash >>> 33;
+
+        return hash;
+
+    }
+
+}
@@ -0,0 +1,72 @@
+package io.github.icrazyblaze.twitchmod.bots;
+
+import net.minecraft.ChatFormatting;
+import net.minecraft.network.chat.Component;
+import net.minecraft.network.chat.Style;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Remembers how each viewer's name is shown in-game, so repeat chatters don't rebuild their colour, role and hover text for every message.
+ * Entries are keyed by the platform's user ID and are thrown away when the viewer's tags (name, colour, roles) change.
+ * The least recently seen viewer is evicted once the cache is full.
+ *
+ * @param <T> the tag values that the presentation was built from
+ * @since 4.1.0
+ */
+public class ViewerPresentationCache<T> {
+
+    private final Map<String, Entry<T>> entries;
+
+    public ViewerPresentationCache(int maxSize) {
+
+        entries = new LinkedHashMap<>(16, 0.75F, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry<T>> eldest) {
+                return size() > maxSize;
+            }
+        };
+
+    }
+
+    /**
+     * @param userId the viewer's user ID
+     * @param tags   the viewer's current tag values
+     * @return the cached presentation, or null if there is none or the tags have changed
+     */
+    public synchronized Presentation get(String userId, T tags) {
+
+        Entry<T> entry = entries.get(userId);
+
+        if (entry == null || !entry.tags().equals(tags)) {
+            return null;
+        }
+
+        return entry.presentation();
+
+    }
+
+    public synchronized void put(String userId, T tags, Presentation presentation) {
+        entries.put(userId, new Entry<>(tags, presentation));
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    /**
+     * Everything needed to show a viewer's message in-game.
+     *
+     * @param format       the viewer's nearest Minecraft colour
+     * @param role         the role label shown when hovering over the message
+     * @param name         the viewer's name, styled with their colour
+     * @param messageStyle the style for the whole message, including the role hover text
+     */
+    public record Presentation(ChatFormatting format, String role, Component name, Style messageStyle) {
+    }
+
+    private record Entry<T>(T tags, Presentation presentation) {
+    }
+
+}
@@ -0,0 +1,158 @@
+package io.github.icrazyblaze.twitchmod.bots;
+
+import java.util.Arrays;
+
+/**
+ * Limits how many messages each viewer can send to the server within a sliding window, so one viewer spamming a command
+ * can't fill the command window. Messages over the limit are dropped on the bot's thread, before they are queued for the server.
+ * <p>
+ * Memory is fixed however big the channel is: viewers (by their key from {@link BotCommon#viewerKey}) are counted in a count-min sketch (several rows of counters, with each viewer
+ * hashed to one counter per row, and the smallest of those counters as the estimate). The estimate can be too high when viewers share
+ * counters, but never too low, so a viewer under the limit may occasionally be limited in a very large channel but a spammer never gets through.
+ * <p>
+ * The sliding window is approximated with two fixed windows: the count for the previous window is scaled by how much of it
+ * still overlaps the sliding window, and added to the count for the current window.
+ *
+ * @see BotCommon#viewerRateLimiter
+ * @since 4.1.0
+ */
+public class ViewerRateLimiter {
+
+    private final int depth;
+    private final int widthMask;
+    private int[] current;
+    private int[] previous;
+    private long windowStart = Long.MIN_VALUE;
+
+    /**
+     * @param depth how many rows of counters there are (more rows make the estimate more accurate)
+     * @param width how many counters are in each row, rounded up to a power of two
+     */
+    public ViewerRateLimiter(int depth, int width) {
+
+        int roundedWidth = Integer.highestOneBit(Math.max(1, width - 1)) << 1;
+
+        this.depth = depth;
+        this.widthMask = roundedWidth - 1;
+        this.current = new int[depth * roundedWidth];
+        this.previous = new int[depth * roundedWidth];
+
+    }
+
+    /**
+     * Counts a message from a viewer, unless they have already sent too many.
+     *
+     * @param viewer      the viewer's key
+     * @param limit       how many messages are allowed in the window, 0 for no limit
+     * @param windowNanos the length of the sliding window
+     * @param now         the current {@link System#nanoTime()}
+     * @return true if the message is allowed
+     */
+    public synchronized boolean tryAcquire(int viewer, int limit, long windowNanos, long now) {
+
+        if (limit <= 0) {
+            return true;
+        }
+
+        advanceWindow(windowNanos, now);
+
+        // How much of the previous window still overlaps the sliding window
+        double overlap = 1.0 - (double) (now - windowStart) / windowNanos;
+
+        long hash = hash(viewer);
+        int firstHash = (int) hash;
+        int secondHash = (int) (hash >>> 32) | 1;
+
+        double estimate = Double.MAX_VALUE;
+        int smallestCurrent = Integer.MAX_VALUE;
+
+        for (int row = 0; row < depth; row++) {
+
+            int index = counterIndex(row, firstHash, secondHash);
+            estimate = Math.min(estimate, previous[index] * overlap + current[index]);
+            smallestCurrent = Math.min(smallestCurrent, current[index]);
+
+        }
+
+        if (estimate >= limit) {
+            return false;
+        }
+
+        // Conservative update: only raise the counters that hold the smallest count, which keeps shared counters from growing too fast
+        for (int row = 0; row < depth; row++) {
+
+            int index = counterIndex(row, firstHash, secondHash);
+
+            if (current[index] == smallestCurrent) {
+                current[index]++;
+            }
+
+        }
+
+        return true;
+
+    }
+
+    public synchronized void clear() {
+
+        Arrays.fill(current, 0);
+        Arrays.fill(previous, 0);
+        windowStart = Long.MIN_VALUE;
+
+    }
+
+    private void advanceWindow(long windowNanos, long now) {
+
+        if (windowStart == Long.MIN_VALUE) {
+            windowStart = now;
+            return;
+        }
+
+        long elapsed = now - windowStart;
+
+        if (elapsed < windowNanos) {
+            return;
+        }
+
+        if (elapsed < windowNanos * 2) {
+
+            // The current window becomes the previous one, reusing the old array for the new window
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+            Arrays.fill(current, 0);
+            windowStart += windowNanos;
+
+        } else {
+
+            // Nothing has been counted for over a window, so nothing overlaps any more
+            Arrays.fill(current, 0);
+            Arrays.fill(previous, 0);
+            windowStart = now;
+
+        }
+
+    }
+
+    private int counterIndex(int row, int firstHash, int secondHash) {
+
+        // Double hashing gives each row its own hash from one 64-bit hash
+        return row * (widthMask + 1) + ((firstHash + row * secondHash) & widthMask);
+
+    }
+
+    private static long hash(int viewer) {
+
+        // Mix the bits of the ID so that both halves of the hash are usable
+        long hash = (viewer + 1) * 0x9E3779B97F4A7C15L;
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        hash *= 0xC4CEB9FE1A85EC53L;
+        hash ^= hash >>> 33;
+
+        return hash;
+
+    }
+
+}
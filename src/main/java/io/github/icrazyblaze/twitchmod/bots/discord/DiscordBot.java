@@ -1,11 +1,15 @@
 package io.github.icrazyblaze.twitchmod.bots.discord;
 
 import io.github.icrazyblaze.twitchmod.CommandHandlers;
-import io.github.icrazyblaze.twitchmod.chat.ChatPicker;
+import io.github.icrazyblaze.twitchmod.bots.BotCommon;
+import io.github.icrazyblaze.twitchmod.bots.ViewerPresentationCache;
 import io.github.icrazyblaze.twitchmod.chat.ChatPickerHelper;
+import io.github.icrazyblaze.twitchmod.chat.ChatPlatform;
+import io.github.icrazyblaze.twitchmod.chat.ViewerRegistry;
 import io.github.icrazyblaze.twitchmod.config.BotConfig;
 import io.github.icrazyblaze.twitchmod.config.ConfigManager;
 import io.github.icrazyblaze.twitchmod.util.CalculateMinecraftColor;
+import io.github.icrazyblaze.twitchmod.util.ModState;
 import io.github.icrazyblaze.twitchmod.util.files.BlacklistSystem;
 import net.dv8tion.jda.api.JDA;
 import net.dv8tion.jda.api.JDABuilder;
@@ -18,20 +22,18 @@ import net.dv8tion.jda.api.events.message.MessageReceivedEvent;
 import net.dv8tion.jda.api.hooks.ListenerAdapter;
 import net.minecraft.ChatFormatting;
 import net.minecraft.client.resources.language.I18n;
-import net.minecraft.network.chat.HoverEvent;
-import net.minecraft.network.chat.MutableComponent;
-import net.minecraft.network.chat.TextComponent;
-import net.minecraft.network.chat.TranslatableComponent;
+import net.minecraft.network.chat.*;
 import org.apache.commons.lang3.StringUtils;
 import org.jetbrains.annotations.NotNull;
 
 import javax.security.auth.login.LoginException;
-import java.awt.*;
 import java.util.ArrayList;
 import java.util.List;
 
 public class DiscordBot extends ListenerAdapter {
 
+    private static final ViewerPresentationCache<DiscordTags> presentationCache = new ViewerPresentationCache<>(1024);
+
     public JDA jda = null;
     public boolean isConnected = false;
 
@@ -77,29 +79,34 @@ public class DiscordBot extends ListenerAdapter {
             return;
         }
 
-        Color userColor = event.getMember().getColor();
+        boolean isAdmin = event.getMember().hasPermission(Permission.ADMINISTRATOR);
 
-        if (userColor == null) {
-            userColor = Color.white;
-        }
+        int viewerKey = BotCommon.viewerKey(ChatPlatform.DISCORD, event.getAuthor().getId());
 
-        boolean isAdmin = event.getMember().hasPermission(Permission.ADMINISTRATOR);
+        // Drop copy-paste floods before they are shown or counted
+        if (!isAdmin && BotCommon.isDuplicateMessage(viewerKey, message)) {
+            return;
+        }
 
         if ((!message.startsWith(BotConfig.getCommandPrefix()) || ConfigManager.SHOW_COMMANDS_IN_CHAT.get()) && ConfigManager.SHOW_CHAT_MESSAGES.get()) {
 
-            ChatFormatting format = CalculateMinecraftColor.findNearestMinecraftColor(userColor);
-            List<String> roleNames = new ArrayList<>();
+            // Repeat chatters reuse the colour, role names and hover text built for their last message
+            List<RoleTags> roles = new ArrayList<>();
 
-            // Get role names and add them to a hover
             for (Role r : event.getMember().getRoles()) {
-                roleNames.add(r.getName());
+                roles.add(new RoleTags(r.getIdLong(), r.getName(), r.getColorRaw()));
             }
 
-            MutableComponent showText = new TranslatableComponent("gui.twitchmod.chat.prefix_discord", new TextComponent(channel).withStyle(ChatFormatting.BLUE), new TextComponent(sender).withStyle(format), message).withStyle(ChatFormatting.WHITE);
+            DiscordTags tags = new DiscordTags(sender, event.getMember().getColorRaw(), roles);
+            ViewerPresentationCache.Presentation presentation = presentationCache.get(event.getMember().getId(), tags);
 
-            if (!roleNames.isEmpty()) {
-                showText.setStyle(showText.getStyle().withHoverEvent(new HoverEvent(HoverEvent.Action.SHOW_TEXT, new TextComponent(format + StringUtils.join(roleNames, ", ")))));
+            if (presentation == null) {
+                presentation = createPresentation(tags);
+                presentationCache.put(event.getMember().getId(), tags, presentation);
             }
+
+            MutableComponent showText = new TranslatableComponent("gui.twitchmod.chat.prefix_discord", new TextComponent(channel).withStyle(ChatFormatting.BLUE), presentation.name(), message).setStyle(presentation.messageStyle());
+
             CommandHandlers.broadcastMessage(showText);
 
         }
@@ -134,10 +141,60 @@ public class DiscordBot extends ListenerAdapter {
         } else if (message.equalsIgnoreCase(BotConfig.getCommandPrefix() + "disconnect") && isAdmin) {
             jda.shutdown();
 
-        } else if (message.startsWith(BotConfig.getCommandPrefix()) || ChatPicker.logMessages) {
+        } else if (message.startsWith(BotConfig.getCommandPrefix()) || ModState.get().logMessages()) {
 
-            ChatPickerHelper.checkChatThreaded(message, sender);
+            // Drop messages from viewers who are sending too many, before they are queued for the server
+            if (!isAdmin && !BotCommon.allowViewerMessage(viewerKey)) {
+                return;
+            }
+
+            // Only viewers whose messages get through are given an ID
+            int viewer = ViewerRegistry.register(ChatPlatform.DISCORD, event.getAuthor().getId(), sender);
+
+            ChatPickerHelper.checkChatThreaded(message, viewer, 1.0, false);
 
         }
     }
+
+    private static ViewerPresentationCache.Presentation createPresentation(DiscordTags tags) {
+
+        int userColor = tags.color();
+
+        if (userColor == Role.DEFAULT_COLOR_RAW) {
+            userColor = 0xFFFFFF;
+        }
+
+        ChatFormatting format = CalculateMinecraftColor.findNearestMinecraftColor(userColor);
+        List<String> roleNames = new ArrayList<>();
+
+        // Get role names and add them to a hover
+        for (RoleTags r : tags.roles()) {
+            roleNames.add(r.name());
+        }
+
+        String role = StringUtils.join(roleNames, ", ");
+        Component name = new TextComponent(tags.name()).withStyle(format);
+        Style messageStyle = Style.EMPTY.withColor(ChatFormatting.WHITE);
+
+        if (!roleNames.isEmpty()) {
+            messageStyle = messageStyle.withHoverEvent(new HoverEvent(HoverEvent.Action.SHOW_TEXT, new TextComponent(format + role)));
+        }
+
+        return new ViewerPresentationCache.Presentation(format, role, name, messageStyle);
+
+    }
+
+    /**
+     * The member values a chatter's presentation is built from. If any of these change, the cached presentation is rebuilt.
+     */
+    private record DiscordTags(String name, int color, List<RoleTags> roles) {
+    }
+
+    /**
+     * A role's values at the time of the message. JDA's {@link Role#equals} only compares IDs, so a renamed or recoloured role
+     * would otherwise still match the cached presentation.
+     */
+    private record RoleTags(long id, String name, int color) {
+    }
+
 }
@@ -6,25 +6,29 @@ import com.github.twitch4j.chat.events.channel.*;
 import com.github.twitch4j.common.enums.CommandPermission;
 import io.github.icrazyblaze.twitchmod.CommandHandlers;
 import io.github.icrazyblaze.twitchmod.Main;
-import io.github.icrazyblaze.twitchmod.chat.ChatPicker;
+import io.github.icrazyblaze.twitchmod.bots.BotCommon;
+import io.github.icrazyblaze.twitchmod.bots.ViewerPresentationCache;
 import io.github.icrazyblaze.twitchmod.chat.ChatPickerHelper;
+import io.github.icrazyblaze.twitchmod.chat.ChatPlatform;
+import io.github.icrazyblaze.twitchmod.chat.CommandWeights;
+import io.github.icrazyblaze.twitchmod.chat.ViewerRegistry;
 import io.github.icrazyblaze.twitchmod.config.BotConfig;
 import io.github.icrazyblaze.twitchmod.config.ConfigManager;
 import io.github.icrazyblaze.twitchmod.util.CalculateMinecraftColor;
+import io.github.icrazyblaze.twitchmod.util.ModState;
 import io.github.icrazyblaze.twitchmod.util.files.BlacklistSystem;
 import net.minecraft.ChatFormatting;
 import net.minecraft.client.resources.language.I18n;
-import net.minecraft.network.chat.HoverEvent;
-import net.minecraft.network.chat.MutableComponent;
-import net.minecraft.network.chat.TextComponent;
-import net.minecraft.network.chat.TranslatableComponent;
+import net.minecraft.network.chat.*;
 
-import java.awt.*;
 import java.util.Objects;
 import java.util.Optional;
 
 public class TwitchBot {
 
+    private static final Component TWITCH_LABEL = new TextComponent("Twitch").withStyle(ChatFormatting.DARK_PURPLE);
+    private static final ViewerPresentationCache<TwitchTags> presentationCache = new ViewerPresentationCache<>(1024);
+
     /**
      * Register events of this class with the EventManager/EventHandler
      *
@@ -38,8 +42,13 @@ public class TwitchBot {
 
     public void onCheer(CheerEvent event) {
 
+        // Cheer messages also arrive as channel messages, which handle them when bits aren't required
+        if (!ConfigManager.REQUIRE_BITS.get()) {
+            return;
+        }
+
         // Come back when you're a little, hmmmmm, richer.
-        if (event.getBits() < ConfigManager.MINIMUM_BITS.get() && ConfigManager.REQUIRE_BITS.get()) {
+        if (event.getBits() < ConfigManager.MINIMUM_BITS.get()) {
             return;
         }
         handleMessage(event);
@@ -60,17 +69,21 @@ public class TwitchBot {
     public void handleMessage(Object any_event) {
 
         IRCMessageEvent event;
+        int bits;
 
         if (any_event instanceof ChannelMessageEvent event1) {
             event = event1.getMessageEvent();
+            bits = event.getTagValue("bits").map(TwitchBot::parseBits).orElse(0);
+        } else if (any_event instanceof CheerEvent cheer) {
+            event = cheer.getMessageEvent();
+            bits = cheer.getBits();
         } else if (any_event instanceof IRCMessageEvent) {
             event = (IRCMessageEvent) any_event;
+            bits = event.getTagValue("bits").map(TwitchBot::parseBits).orElse(0);
         } else {
             return;
         }
 
-        BlacklistSystem.loadBlacklistFile();
-
         // Convert optional into string
         Optional<String> messageOptional = event.getMessage();
         if (messageOptional.isEmpty())
@@ -84,29 +97,21 @@ public class TwitchBot {
         // Debug twitch chat error messages
         chat.getEventManager().onEvent(ChannelNoticeEvent.class, System.out::println);
 
-        ChatFormatting format = ChatFormatting.WHITE;
+        int viewerKey = BotCommon.viewerKey(ChatPlatform.TWITCH, event.getUser().getId());
+
+        // Drop copy-paste floods before they are shown or counted, but let the broadcaster repeat commands for testing
+        if (!event.getClientPermissions().contains(CommandPermission.BROADCASTER) && BotCommon.isDuplicateMessage(viewerKey, message)) {
+            return;
+        }
 
-        MutableComponent showText;
         String role = null;
 
 
         if (ConfigManager.SHOW_CHAT_MESSAGES.get()) {
 
-            ChatPicker.forceCommands = false;
-
-            // Get hex colour, convert to RGB, then get nearest Minecraft colour code
-            Color userColor = Color.decode(event.getTagValue("color").orElse("#FFFFFF"));
-
-            try {
-                format = CalculateMinecraftColor.findNearestMinecraftColor(userColor);
-            } catch (Exception e) {
-                Main.logger.info("No valid user colour");
-            }
-
             // Set default as "chatter" instead of blank
             role = "Chatter";
             if (event.getClientPermissions().contains(CommandPermission.BROADCASTER)) {
-                ChatPicker.forceCommands = true; // Force commands to execute instantly for broadcaster testing
                 role = "Broadcaster";
             } else if (event.getClientPermissions().contains(CommandPermission.MODERATOR)) {
                 role = "Moderator";
@@ -117,9 +122,16 @@ public class TwitchBot {
 
             if (!message.startsWith(BotConfig.getCommandPrefix()) || ConfigManager.SHOW_COMMANDS_IN_CHAT.get()) {
 
-                showText = new TranslatableComponent("gui.twitchmod.chat.prefix_twitch", new TextComponent("Twitch").withStyle(ChatFormatting.DARK_PURPLE), new TextComponent(sender).withStyle(format), message).withStyle(ChatFormatting.WHITE);
+                // Repeat chatters reuse the colour, role and hover text built for their last message
+                TwitchTags tags = new TwitchTags(sender, event.getTagValue("color").orElse("#FFFFFF"), role);
+                ViewerPresentationCache.Presentation presentation = presentationCache.get(event.getUser().getId(), tags);
+
+                if (presentation == null) {
+                    presentation = createPresentation(tags);
+                    presentationCache.put(event.getUser().getId(), tags, presentation);
+                }
 
-                showText.setStyle(showText.getStyle().withHoverEvent(new HoverEvent(HoverEvent.Action.SHOW_TEXT, new TextComponent(format + role))));
+                MutableComponent showText = new TranslatableComponent("gui.twitchmod.chat.prefix_twitch", TWITCH_LABEL, presentation.name(), message).setStyle(presentation.messageStyle());
 
                 CommandHandlers.broadcastMessage(showText);
 
@@ -162,18 +174,60 @@ public class TwitchBot {
 
             TwitchConnectionHelper.login();
 
-        } else if (message.startsWith(BotConfig.getCommandPrefix()) || ChatPicker.logMessages) {
+        } else if (message.startsWith(BotConfig.getCommandPrefix()) || ModState.get().logMessages()) {
+
+            // Drop messages from viewers who are sending too many, before they are queued for the server
+            if (!event.getClientPermissions().contains(CommandPermission.BROADCASTER) && !BotCommon.allowViewerMessage(viewerKey)) {
+                return;
+            }
+
+            // Only viewers whose messages get through are given an ID
+            int viewer = ViewerRegistry.register(ChatPlatform.TWITCH, event.getUser().getId(), sender);
 
-            ChatPickerHelper.checkChatThreaded(message, sender);
+            // Cheers, subscribers and moderators count for more in weighted picker mode
+            boolean moderator = event.getClientPermissions().contains(CommandPermission.MODERATOR) || event.getClientPermissions().contains(CommandPermission.BROADCASTER);
+            boolean subscriber = event.getClientPermissions().contains(CommandPermission.SUBSCRIBER);
+            boolean broadcaster = event.getClientPermissions().contains(CommandPermission.BROADCASTER);
 
+            // Force commands to execute instantly for broadcaster testing
+            ChatPickerHelper.checkChatThreaded(message, viewer, CommandWeights.getViewerWeight(bits, subscriber, moderator), broadcaster);
+
+        }
+
+    }
+
+
+    private static int parseBits(String bits) {
+
+        try {
+            return Integer.parseInt(bits);
+        } catch (NumberFormatException e) {
+            return 0;
         }
 
     }
 
+    private static ViewerPresentationCache.Presentation createPresentation(TwitchTags tags) {
+
+        // Get hex colour, then get nearest Minecraft colour code from the lookup table
+        ChatFormatting format = CalculateMinecraftColor.findNearestMinecraftColor(tags.color());
+
+        Component name = new TextComponent(tags.name()).withStyle(format);
+        Style messageStyle = Style.EMPTY.withColor(ChatFormatting.WHITE).withHoverEvent(new HoverEvent(HoverEvent.Action.SHOW_TEXT, new TextComponent(format + tags.role())));
+
+        return new ViewerPresentationCache.Presentation(format, tags.role(), name, messageStyle);
+
+    }
 
     public void onConnect(ChannelJoinEvent event) {
         CommandHandlers.broadcastMessage(new TranslatableComponent("gui.twitchmod.chat.connected_success_twitch").withStyle(ChatFormatting.DARK_GREEN));
         Main.logger.info("Twitch Client joined channel: " + event.getChannel().getName());
     }
 
+    /**
+     * The tag values a chatter's presentation is built from. If any of these change, the cached presentation is rebuilt.
+     */
+    private record TwitchTags(String name, String color, String role) {
+    }
+
 }
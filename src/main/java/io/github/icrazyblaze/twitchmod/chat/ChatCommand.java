@@ -0,0 +1,15 @@
+package io.github.icrazyblaze.twitchmod.chat;
+
+/**
+ * A command that chat can run. Commands are registered once when the server starts,
+ * and everything that changes between runs (arguments, sender, target player) is passed in through the {@link CommandInvocation}.
+ *
+ * @see ChatCommands#registerCommand(ChatCommand, String...)
+ * @since 4.1.0
+ */
+@FunctionalInterface
+public interface ChatCommand {
+
+    void execute(CommandInvocation invocation);
+
+}
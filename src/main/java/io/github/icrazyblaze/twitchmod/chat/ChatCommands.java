@@ -1,9 +1,7 @@
 package io.github.icrazyblaze.twitchmod.chat;
 
 import io.github.icrazyblaze.twitchmod.CommandHandlers;
-import io.github.icrazyblaze.twitchmod.integration.IntegrationWrapper;
-import io.github.icrazyblaze.twitchmod.util.PlayerHelper;
-import io.github.icrazyblaze.twitchmod.util.files.BlacklistSystem;
+import net.minecraft.server.level.ServerPlayer;
 import net.minecraft.sounds.SoundEvents;
 import net.minecraft.sounds.SoundSource;
 import net.minecraft.world.Difficulty;
@@ -12,6 +10,8 @@ import net.minecraft.world.entity.EntityType;
 import net.minecraft.world.level.block.Blocks;
 
 import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 
 import static io.github.icrazyblaze.twitchmod.util.EffectInstanceHelper.effect;
 
@@ -21,165 +21,302 @@ import static io.github.icrazyblaze.twitchmod.util.EffectInstanceHelper.effect;
  * @see io.github.icrazyblaze.twitchmod.chat.ChatPicker
  */
 public class ChatCommands {
-    static final Map<String, Runnable> commandMap = new HashMap<>();
+    static final Map<String, Registration> commandMap = new LinkedHashMap<>();
+    private static volatile CommandRegistry registry = null;
     static boolean commandHasExecuted = false;
 
     /**
      * Adds a command to a list that ChatPicker checks.
-     * The {@link #registerCommand} method takes two arguments: a runnable, and any number of command aliases.
+     * The {@link #registerCommand} method takes two arguments: a command, and any number of command aliases.
      * <pre>
      * {@code
-     *     registerCommand(() -> CommandHandlers.myCommand(), "mycommand", "mycommandalias");
+     *     registerPlayerCommand(player -> CommandHandlers.myCommand(player), "mycommand", "mycommandalias");
+     *     registerCommand(invocation -> CommandHandlers.myCommand(invocation.player(), invocation.args()), "mycommandwithargs");
      * }
      * </pre>
-     * If an entry with the same runnable or alias has already been registered, it will be replaced.
-     * IDEA will swap the lambda for a method reference wherever possible.
+     * If an entry with the same alias has already been registered, it will be replaced.
+     * Aliases are matched without case, so "Creeper" and "creeper" are the same command.
+     * Commands are registered once, so anything that changes between runs must be read from the {@link CommandInvocation}.
      *
-     * @param runnable The function linked to the command
-     * @param keys     Aliases for the command
+     * @param command The function linked to the command
+     * @param keys    Aliases for the command
      * @see ChatPicker
+     * @since 4.1.0
      */
-    public static void registerCommand(Runnable runnable, String... keys) {
+    public static void registerCommand(ChatCommand command, String... keys) {
+        registerCommand(command, null, keys);
+    }
+
+    /**
+     * Registers a command that can only run when a condition is met, e.g. the player is holding an item.
+     * The picker checks the condition before choosing, so viewers' commands aren't wasted on something that would do nothing.
+     * <pre>
+     * {@code
+     *     registerPlayerCommand(CommandHandlers::dismount, CommandConditions::isRidingOrSleeping, "dismount");
+     * }
+     * </pre>
+     * Conditions are checked often, so they should be cheap and must not change anything.
+     *
+     * @param command The function linked to the command
+     * @param canRun  Checks if the command would do anything for the player, or null if it always can
+     * @param keys    Aliases for the command
+     * @see CommandConditions
+     * @since 4.1.0
+     */
+    public static void registerCommand(ChatCommand command, Predicate<ServerPlayer> canRun, String... keys) {
+
+        Registration registration = new Registration(command, canRun);
 
         /*
         This code is used to add multiple aliases for commands using hashmaps.
         Thank you gigaherz, very cool!
         */
         for (String key : keys) {
+            commandMap.put(key.toLowerCase(Locale.ROOT), registration);
+        }
+
+        // Anything registered after the registry was frozen is picked up the next time it is needed
+        registry = null;
+
+    }
+
+    /**
+     * Freezes the registered commands into a {@link CommandRegistry}. Called once every command has been registered when the server starts.
+     *
+     * @since 4.1.0
+     */
+    public static synchronized void freeze() {
+        registry = CommandRegistry.freeze(commandMap);
+    }
 
-            // Don't register exactly the same command every time
-            if (commandMap.containsKey(key) && commandMap.containsValue(runnable)) {
-                commandMap.replace(key, runnable);
-            } else {
-                commandMap.put(key, runnable);
+    /**
+     * @return the frozen registry, which is built now if a command has been registered since it was last frozen
+     * @since 4.1.0
+     */
+    public static CommandRegistry getRegistry() {
+
+        CommandRegistry current = registry;
+
+        if (current == null) {
+            synchronized (ChatCommands.class) {
+                if (registry == null) {
+                    registry = CommandRegistry.freeze(commandMap);
+                }
+                current = registry;
             }
+        }
+
+        return current;
+
+    }
+
+    /**
+     * Unlike {@link #getRegistry()} this never builds the registry, so it is safe to call from the bot threads
+     * while commands are still being registered.
+     *
+     * @return the frozen registry, or null if a command has been registered since it was last frozen
+     * @since 4.1.0
+     */
+    public static CommandRegistry getFrozenRegistry() {
+        return registry;
+    }
+
+    /**
+     * Finds the command whose alias matches part of a message, ignoring case.
+     *
+     * @param message the chat message
+     * @param token   the command's offsets in the message, from {@link CommandTokenizer}
+     * @return the command, or null if no command has that alias
+     * @since 4.1.0
+     */
+    static ChatCommand getCommand(CharSequence message, CommandTokenizer.Token token) {
+
+        CommandRegistry commands = getRegistry();
+        int id = commands.findCommand(message, token.nameStart(), token.nameEnd());
+
+        return id < 0 ? null : commands.getHandler(id);
+
+    }
+
+    /**
+     * @return the command name from the message in lower case, e.g. "messagebox"
+     * @since 4.1.0
+     */
+    static String getCommandKey(CharSequence message, CommandTokenizer.Token token) {
+
+        int start = token.nameStart();
+        int end = token.nameEnd();
 
+        for (int i = start; i < end; i++) {
+            char c = message.charAt(i);
+            if (Character.toLowerCase(c) != c) {
+                return message.subSequence(start, end).toString().toLowerCase(Locale.ROOT);
+            }
         }
 
+        return message.subSequence(start, end).toString();
+
+    }
+
+    /**
+     * Registers a command that only needs the player it affects.
+     * The player is passed in on every run, so a command sent to several players looks each one up once rather than on every use.
+     * IDEA will swap the lambda for a method reference wherever possible.
+     *
+     * @param command The function linked to the command
+     * @param keys    Aliases for the command
+     * @see #registerCommand(ChatCommand, String...)
+     * @since 4.1.0
+     */
+    public static void registerPlayerCommand(Consumer<ServerPlayer> command, String... keys) {
+        registerCommand(invocation -> command.accept(invocation.player()), keys);
+    }
+
+    /**
+     * Registers a command that only needs the player it affects, and can only run when a condition is met.
+     *
+     * @param command The function linked to the command
+     * @param canRun  Checks if the command would do anything for the player
+     * @param keys    Aliases for the command
+     * @see #registerCommand(ChatCommand, Predicate, String...)
+     * @since 4.1.0
+     */
+    public static void registerPlayerCommand(Consumer<ServerPlayer> command, Predicate<ServerPlayer> canRun, String... keys) {
+        registerCommand(invocation -> command.accept(invocation.player()), canRun, keys);
+    }
+
+    /**
+     * Registers a command that doesn't affect a particular player, and doesn't need any arguments or sender information.
+     *
+     * @param runnable The function linked to the command
+     * @param keys     Aliases for the command
+     * @see #registerCommand(ChatCommand, String...)
+     */
+    public static void registerCommand(Runnable runnable, String... keys) {
+        registerCommand(invocation -> runnable.run(), keys);
+    }
+
+    /**
+     * Registers a command that doesn't need any arguments or sender information, and can only run when a condition is met.
+     *
+     * @param runnable The function linked to the command
+     * @param canRun   Checks if the command would do anything for the player
+     * @param keys     Aliases for the command
+     * @see #registerCommand(ChatCommand, Predicate, String...)
+     * @since 4.1.0
+     */
+    public static void registerCommand(Runnable runnable, Predicate<ServerPlayer> canRun, String... keys) {
+        registerCommand(invocation -> runnable.run(), canRun, keys);
     }
 
     /**
-     * Commands are registered here from {@link ChatPicker#doCommand}.
+     * Commands are registered here once when the server starts.
      */
     public static void initCommands() {
 
-        registerCommand(() -> CommandHandlers.addPotionEffects(effect(MobEffects.POISON, 400, 0)), "poison");
-        registerCommand(() -> CommandHandlers.addPotionEffects(effect(MobEffects.HUNGER, 400, 255)), "faim");
-        registerCommand(() -> CommandHandlers.addPotionEffects(effect(MobEffects.MOVEMENT_SLOWDOWN, 400, 5)), "ralenti");
-        registerCommand(() -> CommandHandlers.addPotionEffects(effect(MobEffects.BLINDNESS, 400, 0)), "aveugle");
-        registerCommand(() -> CommandHandlers.addPotionEffects(effect(MobEffects.MOVEMENT_SPEED, 400, 10)), "vitesse");
-        registerCommand(() -> CommandHandlers.addPotionEffects(effect(MobEffects.CONFUSION, 400, 0)), "nausee");
-        registerCommand(() -> CommandHandlers.addPotionEffects(effect(MobEffects.DIG_SLOWDOWN, 400, 0)), "fatigue");
-        registerCommand(() -> CommandHandlers.addPotionEffects(effect(MobEffects.LEVITATION, 200, 1)), "levitation", "ibelieveicanfly");
-        registerCommand(() -> CommandHandlers.addPotionEffects(effect(MobEffects.LEVITATION, 400, 255)), "pastomber", "flotter");
-        registerCommand(() -> CommandHandlers.addPotionEffects(effect(MobEffects.HEALTH_BOOST, 400, 1), effect(MobEffects.REGENERATION, 400, 1)), "regen", "heal", "health");
-        registerCommand(() -> CommandHandlers.addPotionEffects(effect(MobEffects.SATURATION, 200, 255)), "repus", "bouffe");
-        registerCommand(() -> CommandHandlers.addPotionEffects(effect(MobEffects.JUMP, 400, 2)), "jumpjump");
-        registerCommand(() -> CommandHandlers.addPotionEffects(effect(MobEffects.DIG_SPEED, 400, 2)), "hate", "diggydiggy");
-        registerCommand(() -> CommandHandlers.addPotionEffects(effect(MobEffects.BAD_OMEN, 400, 0)), "badomen", "pillager", "raid");
-        registerCommand(() -> CommandHandlers.addPotionEffects(effect(MobEffects.FIRE_RESISTANCE, 800, 0), effect(MobEffects.DAMAGE_RESISTANCE, 800, 4)), "resistance");
-        registerCommand(CommandHandlers::giveRandomPotionEffect, "aleatoire", "poporoulette");
-        registerCommand(() -> PlayerHelper.player().removeAllEffects(), "elixir", "lait");
-        registerCommand(CommandHandlers::setOnFire, "feu", "brule");
-        registerCommand(CommandHandlers::floorIsLava, "lave", "floorislava");
-        registerCommand(CommandHandlers::placeWater, "eau");
-        registerCommand(CommandHandlers::placeSponge, "eponge");
-        registerCommand(() -> CommandHandlers.deathTimer(60), "timer60");
-        registerCommand(() -> CommandHandlers.deathTimer(30), "timer30");
-        registerCommand(CommandHandlers::drainHealth, "drain", "abobo");
-        registerCommand(CommandHandlers::spawnAnvil, "enclume"); // Gaiet's favourite command <3
-        registerCommand(() -> CommandHandlers.spawnMobBehind(EntityType.CREEPER.create(PlayerHelper.player().level)), "creeper");
-        registerCommand(() -> CommandHandlers.spawnMobBehind(EntityType.ZOMBIE.create(PlayerHelper.player().level)), "zombie");
-        registerCommand(() -> CommandHandlers.spawnMob(EntityType.ENDERMAN.create(PlayerHelper.player().level)), "enderman");
-        registerCommand(() -> CommandHandlers.spawnMobBehind(EntityType.WITCH.create(PlayerHelper.player().level)), "sorciere");
-        registerCommand(() -> CommandHandlers.spawnMobBehind(EntityType.SKELETON.create(PlayerHelper.player().level)), "squelette");
-        registerCommand(() -> CommandHandlers.spawnMobBehind(EntityType.SLIME.create(PlayerHelper.player().level)), "slime");
-        registerCommand(CommandHandlers::spawnArmorStand, "armorstand", "armourstand", "boo");
-        registerCommand(() -> CommandHandlers.playSound(SoundEvents.CREEPER_PRIMED, SoundSource.HOSTILE, 1.0F, 1.0F), "pchhh", "behindyou");
-        registerCommand(() -> CommandHandlers.playSound(SoundEvents.ZOMBIE_AMBIENT, SoundSource.HOSTILE, 1.0F, 1.0F), "greuh", "bruh");
-        registerCommand(() -> CommandHandlers.playSound(SoundEvents.SKELETON_AMBIENT, SoundSource.HOSTILE, 1.0F, 1.0F), "bruitos", "spook");
-        registerCommand(() -> CommandHandlers.playSound(SoundEvents.WITCH_AMBIENT, SoundSource.HOSTILE, 1.0F, 1.0F), "hinhin", "hehe");
-        registerCommand(() -> CommandHandlers.playSound(SoundEvents.GHAST_WARN, SoundSource.HOSTILE, 10.0F, 1.0F), "ghastscare", "yikes");
-        registerCommand(() -> CommandHandlers.playSound(SoundEvents.PHANTOM_AMBIENT, SoundSource.HOSTILE, 10.0F, 1.0F), "phantomscare", "needsleep");
-        registerCommand(() -> CommandHandlers.playSound(SoundEvents.WITHER_AMBIENT, SoundSource.HOSTILE, 10.0F, 1.0F), "witherscare", "wither");
-        registerCommand(CommandHandlers::pigmanScare, "pigmanscare", "aggro");
-        registerCommand(CommandHandlers::elderGuardianScare, "guardian", "guardianscare");
-        registerCommand(() -> CommandHandlers.playSound(SoundEvents.ANVIL_FALL, SoundSource.BLOCKS, 1.0F, 1.0F), "bruitenclume");
-        registerCommand(CommandHandlers::spawnLightning, "foudre");
-        registerCommand(CommandHandlers::spawnFireball, "bouledefeu");
+        registerPlayerCommand(player -> CommandHandlers.addPotionEffects(player, effect(MobEffects.POISON, 400, 0)), "poison");
+        registerPlayerCommand(player -> CommandHandlers.addPotionEffects(player, effect(MobEffects.HUNGER, 400, 255)), "faim");
+        registerPlayerCommand(player -> CommandHandlers.addPotionEffects(player, effect(MobEffects.MOVEMENT_SLOWDOWN, 400, 5)), "ralenti");
+        registerPlayerCommand(player -> CommandHandlers.addPotionEffects(player, effect(MobEffects.BLINDNESS, 400, 0)), "aveugle");
+        registerPlayerCommand(player -> CommandHandlers.addPotionEffects(player, effect(MobEffects.MOVEMENT_SPEED, 400, 10)), "vitesse");
+        registerPlayerCommand(player -> CommandHandlers.addPotionEffects(player, effect(MobEffects.CONFUSION, 400, 0)), "nausee");
+        registerPlayerCommand(player -> CommandHandlers.addPotionEffects(player, effect(MobEffects.DIG_SLOWDOWN, 400, 0)), "fatigue");
+        registerPlayerCommand(player -> CommandHandlers.addPotionEffects(player, effect(MobEffects.LEVITATION, 200, 1)), "levitation", "ibelieveicanfly");
+        registerPlayerCommand(player -> CommandHandlers.addPotionEffects(player, effect(MobEffects.LEVITATION, 400, 255)), "pastomber", "flotter");
+        registerPlayerCommand(player -> CommandHandlers.addPotionEffects(player, effect(MobEffects.HEALTH_BOOST, 400, 1), effect(MobEffects.REGENERATION, 400, 1)), "regen", "heal", "health");
+        registerPlayerCommand(player -> CommandHandlers.addPotionEffects(player, effect(MobEffects.SATURATION, 200, 255)), "repus", "bouffe");
+        registerPlayerCommand(player -> CommandHandlers.addPotionEffects(player, effect(MobEffects.JUMP, 400, 2)), "jumpjump");
+        registerPlayerCommand(player -> CommandHandlers.addPotionEffects(player, effect(MobEffects.DIG_SPEED, 400, 2)), "hate", "diggydiggy");
+        registerPlayerCommand(player -> CommandHandlers.addPotionEffects(player, effect(MobEffects.BAD_OMEN, 400, 0)), "badomen", "pillager", "raid");
+        registerPlayerCommand(player -> CommandHandlers.addPotionEffects(player, effect(MobEffects.FIRE_RESISTANCE, 800, 0), effect(MobEffects.DAMAGE_RESISTANCE, 800, 4)), "resistance");
+        registerPlayerCommand(CommandHandlers::giveRandomPotionEffect, "aleatoire", "poporoulette");
+        registerPlayerCommand(ServerPlayer::removeAllEffects, "elixir", "lait");
+        registerPlayerCommand(CommandHandlers::setOnFire, "feu", "brule");
+        registerPlayerCommand(CommandHandlers::floorIsLava, "lave", "floorislava");
+        registerPlayerCommand(CommandHandlers::placeWater, "eau");
+        registerPlayerCommand(CommandHandlers::placeSponge, "eponge");
+        registerPlayerCommand(CommandHandlers::drainHealth, "drain", "abobo");
+        registerPlayerCommand(CommandHandlers::spawnAnvil, "enclume"); // Gaiet's favourite command <3
+        registerPlayerCommand(player -> CommandHandlers.spawnMobBehind(player, EntityType.CREEPER.create(player.level)), "creeper");
+        registerPlayerCommand(player -> CommandHandlers.spawnMobBehind(player, EntityType.ZOMBIE.create(player.level)), "zombie");
+        registerPlayerCommand(player -> CommandHandlers.spawnMob(player, EntityType.ENDERMAN.create(player.level)), "enderman");
+        registerPlayerCommand(player -> CommandHandlers.spawnMobBehind(player, EntityType.WITCH.create(player.level)), "sorciere");
+        registerPlayerCommand(player -> CommandHandlers.spawnMobBehind(player, EntityType.SKELETON.create(player.level)), "squelette");
+        registerPlayerCommand(player -> CommandHandlers.spawnMobBehind(player, EntityType.SLIME.create(player.level)), "slime");
+        registerPlayerCommand(CommandHandlers::spawnArmorStand, "armorstand", "armourstand", "boo");
+        registerPlayerCommand(player -> CommandHandlers.playSound(player, SoundEvents.CREEPER_PRIMED, SoundSource.HOSTILE, 1.0F, 1.0F), "pchhh", "behindyou");
+        registerPlayerCommand(player -> CommandHandlers.playSound(player, SoundEvents.ZOMBIE_AMBIENT, SoundSource.HOSTILE, 1.0F, 1.0F), "greuh", "bruh");
+        registerPlayerCommand(player -> CommandHandlers.playSound(player, SoundEvents.SKELETON_AMBIENT, SoundSource.HOSTILE, 1.0F, 1.0F), "bruitos", "spook");
+        registerPlayerCommand(player -> CommandHandlers.playSound(player, SoundEvents.WITCH_AMBIENT, SoundSource.HOSTILE, 1.0F, 1.0F), "hinhin", "hehe");
+        registerPlayerCommand(player -> CommandHandlers.playSound(player, SoundEvents.GHAST_WARN, SoundSource.HOSTILE, 10.0F, 1.0F), "ghastscare", "yikes");
+        registerPlayerCommand(player -> CommandHandlers.playSound(player, SoundEvents.PHANTOM_AMBIENT, SoundSource.HOSTILE, 10.0F, 1.0F), "phantomscare", "needsleep");
+        registerPlayerCommand(player -> CommandHandlers.playSound(player, SoundEvents.WITHER_AMBIENT, SoundSource.HOSTILE, 10.0F, 1.0F), "witherscare", "wither");
+        registerPlayerCommand(CommandHandlers::pigmanScare, "pigmanscare", "aggro");
+        registerPlayerCommand(CommandHandlers::elderGuardianScare, "guardian", "guardianscare");
+        registerPlayerCommand(player -> CommandHandlers.playSound(player, SoundEvents.ANVIL_FALL, SoundSource.BLOCKS, 1.0F, 1.0F), "bruitenclume");
+        registerPlayerCommand(CommandHandlers::spawnLightning, "foudre");
+        registerPlayerCommand(CommandHandlers::spawnFireball, "bouledefeu");
         registerCommand(() -> CommandHandlers.oresExplode = true, "oresexplode");
         registerCommand(() -> CommandHandlers.placeBedrockOnBreak = true, "bedrock");
         registerCommand(() -> CommandHandlers.burnVillagersOnInteract = true, "villagersburn", "burnthemall");
         registerCommand(() -> CommandHandlers.destroyWorkbenchesOnInteract = true, "nocrafting", "breakworkbench");
-        registerCommand(CommandHandlers::breakBlock, "break");
-        registerCommand(CommandHandlers::dismount, "dismount", "getoff");
-        registerCommand(CommandHandlers::dropItem, "drop", "throw");
-        registerCommand(() -> PlayerHelper.player().getInventory().dropAll(), "dropall");
-        registerCommand(CommandHandlers::infestBlock, "silverfish"); // crash when in water or sand
-        registerCommand(CommandHandlers::setRainAndThunder, "pluie", "makeitrain");
+        registerPlayerCommand(CommandHandlers::breakBlock, "break");
+        registerPlayerCommand(CommandHandlers::dismount, CommandConditions::isRidingOrSleeping, "dismount", "getoff");
+        registerPlayerCommand(CommandHandlers::dropItem, CommandConditions::isHoldingItem, "drop", "throw");
+        registerPlayerCommand(player -> player.getInventory().dropAll(), CommandConditions::hasItems, "dropall");
+        registerPlayerCommand(CommandHandlers::infestBlock, "silverfish"); // crash when in water or sand
+        registerPlayerCommand(CommandHandlers::setRainAndThunder, "pluie", "makeitrain");
         registerCommand(() -> CommandHandlers.setDifficulty(Difficulty.HARD), "hard", "hardmode");
         registerCommand(() -> CommandHandlers.setDifficulty(Difficulty.EASY), "easy");
         registerCommand(() -> CommandHandlers.setDifficulty(Difficulty.NORMAL), "normal");
         registerCommand(() -> CommandHandlers.setDifficulty(Difficulty.PEACEFUL), "peaceful", "peacefulmode");
-        registerCommand(CommandHandlers::placeChest, "coffre", "lootbox");
+        registerPlayerCommand(CommandHandlers::placeChest, "coffre", "lootbox");
         registerCommand(() -> CommandHandlers.setTime(1000), "jour", "setday");
         registerCommand(() -> CommandHandlers.setTime(13000), "nuit", "setnight");
-        registerCommand(CommandHandlers::placeCobweb, "cobweb", "stuck", "gbj");
-        registerCommand(CommandHandlers::setSpawn, "spawnpoint", "setspawn");
-        registerCommand(() -> CommandHandlers.surroundPlayer(Blocks.GLASS.defaultBlockState()), "glass");
-        registerCommand(CommandHandlers::enchantItem, "enchant");
-        registerCommand(CommandHandlers::curseArmour, "bind", "curse");
-        registerCommand(CommandHandlers::startWritingBook, "book", "chatlog");
-        registerCommand(CommandHandlers::toggleCrouch, "togglecrouch", "crouch");
-        registerCommand(CommandHandlers::toggleSprint, "togglesprint", "sprint");
-        registerCommand(CommandHandlers::pumpkin, "pumpkin");
-        registerCommand(CommandHandlers::chorusTeleport, "chorusfruit", "chorus");
-        registerCommand(CommandHandlers::realTeleport, "teleport");
-        registerCommand(() -> CommandHandlers.changeDurability(false), "damage", "damageitem");
-        registerCommand(() -> CommandHandlers.changeDurability(true), "repair", "repairitem");
+        registerPlayerCommand(CommandHandlers::placeCobweb, "cobweb", "stuck", "gbj");
+        registerPlayerCommand(CommandHandlers::setSpawn, "spawnpoint", "setspawn");
+        registerPlayerCommand(player -> CommandHandlers.surroundPlayer(player, Blocks.GLASS.defaultBlockState()), "glass");
+        registerPlayerCommand(player -> CommandHandlers.buildDome(player, Blocks.GLASS.defaultBlockState(), 8), "dome", "glassdome");
+        registerPlayerCommand(CommandHandlers::enchantItem, CommandConditions::hasItems, "enchant");
+        registerPlayerCommand(CommandHandlers::curseArmour, CommandConditions::isWearingArmour, "bind", "curse");
+        registerPlayerCommand(CommandHandlers::startWritingBook, "book", "chatlog");
+        registerPlayerCommand(CommandHandlers::toggleCrouch, "togglecrouch", "crouch");
+        registerPlayerCommand(CommandHandlers::toggleSprint, "togglesprint", "sprint");
+        registerPlayerCommand(CommandHandlers::pumpkin, CommandConditions::canWearPumpkin, "pumpkin");
+        registerPlayerCommand(CommandHandlers::chorusTeleport, "chorusfruit", "chorus");
+        registerPlayerCommand(CommandHandlers::realTeleport, "teleport");
+        registerPlayerCommand(player -> CommandHandlers.changeDurability(player, false), CommandConditions::isHoldingDamageableItem, "damage", "damageitem");
+        registerPlayerCommand(player -> CommandHandlers.changeDurability(player, true), CommandConditions::isHoldingDamageableItem, "repair", "repairitem");
+
+        // Commands below use the arguments, the sender or the pipeline from the invocation
+        registerCommand(invocation -> CommandHandlers.itemRoulette(invocation.player(), invocation.sender()), CommandConditions::hasItems, "itemroulette", "roulette");
+        registerCommand(invocation -> CommandHandlers.shuffleInventory(invocation.player(), invocation.sender()), CommandConditions::hasItems, "shuffle");
+        registerCommand(invocation -> CommandHandlers.showMessagebox(invocation.player(), invocation.args()), "messagebox");
+        registerCommand(invocation -> CommandHandlers.messagesList.add(invocation.args()), "addmessage");
+        registerCommand(invocation -> CommandHandlers.placeSign(invocation.player(), invocation.args()), "sign");
+        registerCommand(invocation -> CommandHandlers.renameItem(invocation.player(), invocation.args()), CommandConditions::hasItems, "rename");
+        registerCommand(invocation -> CommandHandlers.rollTheDice(invocation.pipeline(), invocation.viewer()), "rtd", "roll", "dice");
+        registerCommand(invocation -> FrenzyVote.vote(invocation.pipeline(), invocation.viewer(), invocation.player()), "frenzy", "frenzymode", "suddendeath");
+        registerCommand(invocation -> CommandHandlers.deathTimer(invocation.pipeline(), invocation.player(), 60), "timer60");
+        registerCommand(invocation -> CommandHandlers.deathTimer(invocation.pipeline(), invocation.player(), 30), "timer30");
 
     }
 
     /**
-     * Commands that are registered here need to be re-added to the command registry every time a command is checked because they have changing ("dynamic") arguments.
-     *
-     * @param argString the argument for the command
-     * @param sender    the name of the command sender
+     * @return a sorted list of all the currently registered commands and their aliases, which is only rebuilt when the blacklist changes
      */
-    public static void initDynamicCommands(String argString, String sender) {
-
-        registerCommand(() -> CommandHandlers.itemRoulette(sender), "itemroulette", "roulette");
-        registerCommand(() -> CommandHandlers.shuffleInventory(sender), "shuffle");
-        registerCommand(() -> CommandHandlers.showMessagebox(argString), "messagebox");
-        registerCommand(() -> CommandHandlers.messagesList.add(argString), "addmessage");
-        registerCommand(() -> CommandHandlers.placeSign(argString), "sign");
-        registerCommand(() -> CommandHandlers.renameItem(argString), "rename");
-        registerCommand(() -> CommandHandlers.rollTheDice(sender), "rtd", "roll", "dice");
-        registerCommand(() -> FrenzyVote.vote(sender), "frenzy", "frenzymode", "suddendeath");
-
-        // Mod dynamic commands
-        IntegrationWrapper.initModDynamicCommands(sender);
-
+    public static List<String> getRegisteredCommands() {
+        return getRegistry().getAllowedAliases();
     }
 
     /**
-     * @return a sorted list of all the currently registered commands and their aliases
+     * A registered command and its condition. Every alias registered together shares one registration.
+     *
+     * @param command the function linked to the command
+     * @param canRun  the command's condition, or null if it can always run
+     * @since 4.1.0
      */
-    public static List<String> getRegisteredCommands() {
-
-        List<String> commandList = new ArrayList<>();
-
-        for (String key : commandMap.keySet()) {
-
-            if (!BlacklistSystem.isBlacklisted(key)) {
-                commandList.add(key);
-            }
-
-        }
-
-        Collections.sort(commandList);
-        return commandList;
-
+    record Registration(ChatCommand command, Predicate<ServerPlayer> canRun) {
     }
 
 }
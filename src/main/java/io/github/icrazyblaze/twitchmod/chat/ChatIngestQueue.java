@@ -0,0 +1,231 @@
+package io.github.icrazyblaze.twitchmod.chat;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * A bounded, lock-free ring buffer used to hand chat messages from the bot threads to the server thread.
+ * Any number of bot threads can offer messages at the same time without blocking, and the server thread drains
+ * a limited number of them every tick.
+ * When the ring is full, the {@link OverflowPolicy} decides which message is thrown away.
+ *
+ * @param <T> the type of message stored in the ring
+ * @see ChatPickerHelper
+ * @since 4.1.0
+ */
+public class ChatIngestQueue<T> {
+
+    /**
+     * What to do with a new message when the ring is full.
+     */
+    public enum OverflowPolicy {
+        /**
+         * Throw away the oldest queued message to make room for the new one.
+         */
+        DROP_OLDEST,
+        /**
+         * Throw away the new message.
+         */
+        DROP_NEWEST,
+        /**
+         * Keep the new message with a probability that shrinks as more messages overflow, in place of a random queued message,
+         * so the ring holds a uniform sample of everything that arrived since the last drain (reservoir sampling).
+         */
+        SAMPLE
+    }
+
+    private final int capacity;
+    private final int mask;
+    private final AtomicReferenceArray<T> buffer;
+    private final AtomicLongArray sequences;
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong overflowSinceDrain = new AtomicLong();
+    private final LongAdder dropped = new LongAdder();
+
+    /**
+     * @param requestedCapacity the minimum number of messages the ring can hold, rounded up to a power of two
+     */
+    public ChatIngestQueue(int requestedCapacity) {
+
+        capacity = Integer.highestOneBit(Math.max(2, requestedCapacity - 1)) << 1;
+        mask = capacity - 1;
+        buffer = new AtomicReferenceArray<>(capacity);
+        sequences = new AtomicLongArray(capacity);
+
+        for (int i = 0; i < capacity; i++) {
+            sequences.set(i, i);
+        }
+
+    }
+
+    /**
+     * Adds a message to the ring. This never blocks, so it is safe to call from the bot threads.
+     *
+     * @param message the message to add
+     * @param policy  what to do if the ring is full
+     * @return true if the new message was queued
+     */
+    public boolean offer(T message, OverflowPolicy policy) {
+
+        boolean admitted = false;
+
+        while (!tryOffer(message)) {
+
+            if (policy == OverflowPolicy.DROP_NEWEST) {
+                dropped.increment();
+                return false;
+            }
+
+            if (policy == OverflowPolicy.SAMPLE) {
+
+                if (!admitted) {
+
+                    long seen = overflowSinceDrain.incrementAndGet();
+
+                    if (ThreadLocalRandom.current().nextLong(capacity + seen) >= capacity) {
+                        dropped.increment();
+                        return false;
+                    }
+
+                    admitted = true;
+
+                }
+
+                if (replaceRandom(message)) {
+                    dropped.increment();
+                    return true;
+                }
+
+                // The slot was being written or drained, so try again
+                continue;
+
+            }
+
+            // Make room by evicting the oldest message, then try again
+            if (poll() != null) {
+                dropped.increment();
+            }
+
+        }
+
+        return true;
+
+    }
+
+    /**
+     * Swaps a random queued message for the new one. Only replaces a slot that still holds a message,
+     * as {@link #poll()} takes messages out atomically, so a message is never lost between the two.
+     */
+    private boolean replaceRandom(T message) {
+
+        long first = head.get();
+        long queued = tail.get() - first;
+
+        if (queued <= 0) {
+            return false;
+        }
+
+        int index = (int) ((first + ThreadLocalRandom.current().nextLong(queued)) & mask);
+        T current = buffer.get(index);
+
+        return current != null && buffer.compareAndSet(index, current, message);
+
+    }
+
+    private boolean tryOffer(T message) {
+
+        while (true) {
+
+            long pos = tail.get();
+            int index = (int) (pos & mask);
+            long diff = sequences.get(index) - pos;
+
+            if (diff == 0) {
+                if (tail.compareAndSet(pos, pos + 1)) {
+                    buffer.lazySet(index, message);
+                    sequences.set(index, pos + 1);
+                    return true;
+                }
+            } else if (diff < 0) {
+                return false; // Full
+            }
+
+        }
+
+    }
+
+    /**
+     * Removes the oldest message from the ring.
+     *
+     * @return the message, or null if the ring is empty
+     */
+    public T poll() {
+
+        while (true) {
+
+            long pos = head.get();
+            int index = (int) (pos & mask);
+            long diff = sequences.get(index) - (pos + 1);
+
+            if (diff == 0) {
+                if (head.compareAndSet(pos, pos + 1)) {
+                    // Taken atomically, so a message swapped in by SAMPLE is either returned here or not swapped in at all
+                    T message = buffer.getAndSet(index, null);
+                    sequences.set(index, pos + capacity);
+                    return message;
+                }
+            } else if (diff < 0) {
+                return null; // Empty
+            }
+
+        }
+
+    }
+
+    /**
+     * Passes up to {@code max} queued messages to the consumer, oldest first.
+     *
+     * @param max      the most messages to drain in this call
+     * @param consumer receives each message
+     * @return how many messages were drained
+     */
+    public int drain(int max, Consumer<T> consumer) {
+
+        overflowSinceDrain.set(0);
+
+        int count = 0;
+        T message;
+
+        while (count < max && (message = poll()) != null) {
+            consumer.accept(message);
+            count++;
+        }
+
+        return count;
+
+    }
+
+    /**
+     * @return an estimate of how many messages are waiting in the ring
+     */
+    public int size() {
+        return (int) Math.max(0, Math.min(capacity, tail.get() - head.get()));
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return how many messages have been thrown away because the ring was full
+     */
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+}
@@ -5,16 +5,18 @@ import io.github.icrazyblaze.twitchmod.Main;
 import io.github.icrazyblaze.twitchmod.bots.BotCommon;
 import io.github.icrazyblaze.twitchmod.config.BotConfig;
 import io.github.icrazyblaze.twitchmod.config.ConfigManager;
+import io.github.icrazyblaze.twitchmod.util.ModState;
 import io.github.icrazyblaze.twitchmod.util.PlayerHelper;
-import io.github.icrazyblaze.twitchmod.util.files.BlacklistSystem;
+import io.github.icrazyblaze.twitchmod.util.world.BlockEditJournal;
 import net.minecraft.ChatFormatting;
 import net.minecraft.client.resources.language.I18n;
 import net.minecraft.network.chat.TranslatableComponent;
+import net.minecraft.server.level.ServerPlayer;
 
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Date;
-import java.util.Random;
+import java.util.List;
 
 /**
  * This class is responsible for picking commands from chat and running them.
@@ -23,72 +25,192 @@ import java.util.Random;
  */
 public class ChatPicker {
 
-    public static ArrayList<String> chatBuffer = new ArrayList<>();
-    public static ArrayList<String> chatSenderBuffer = new ArrayList<>();
-    public static boolean forceCommands = false;
-    public static boolean instantCommands = false;
-    public static boolean enabled = true;
-    public static boolean logMessages = false;
+    // Only used on the server thread, anything other threads read is in ModState
     public static ArrayList<String> tempChatLog = new ArrayList<>();
-    private static String lastCommand = null;
 
     /**
-     * Checks the command against the blacklist, unless force commands is enabled.
+     * Checks the command against the blacklist.
      * If the chat should be logged for writing into a book then that is also done here.
      *
      * @param message The chat message
      * @param sender  The sender's name
      */
     public static void checkChat(String message, String sender) {
+        checkChat(message, ViewerRegistry.registerPlayer(sender), 1.0, false);
+    }
 
-        if (!enabled)
+    /**
+     * Checks the command against the blacklist, unless it is forced.
+     * If the chat should be logged for writing into a book then that is also done here.
+     *
+     * @param message The chat message
+     * @param viewer  The sender's ID, see {@link ViewerRegistry}
+     * @param weight  The sender's weight for this message, used by {@link PickerMode#WEIGHTED}
+     * @param force   Run the command straight away, ignoring the blacklist and cooldowns (used by the broadcaster for testing)
+     * @since 4.1.0
+     */
+    public static void checkChat(String message, int viewer, double weight, boolean force) {
+
+        CommandTokenizer.Token token = CommandTokenizer.tokenize(message, BotConfig.getCommandPrefix());
+
+        if (token == null && ModState.get().logMessages()) {
+            logChatMessage(message, viewer);
             return;
+        }
 
-        // Remove the prefix
-        if (message.startsWith(BotConfig.getCommandPrefix())) {
-            message = message.substring(BotConfig.getCommandPrefix().length());
+        // Commands from inside the game (e.g. /ttv test) have already had the prefix removed
+        if (token == null) {
+            token = CommandTokenizer.tokenize(message, 0);
+        }
 
-            if (!ChatCommands.commandMap.containsKey(message))
-                return;
+        if (token == null)
+            return;
+
+        // A keyword before the command sends it to that player's pipeline, e.g. "!red creeper"
+        int pipeline = CommandPipelines.route(message, token);
+
+        if (pipeline != CommandPipelines.DEFAULT) {
+            token = CommandTokenizer.tokenize(message, token.nameEnd());
+        }
+
+        checkCommandToken(pipeline, message, token, viewer, weight, force);
+
+    }
+
+    /**
+     * Checks a command that is already known to be for a pipeline, e.g. one chosen by rolling the dice.
+     *
+     * @param pipeline The pipeline's ID, see {@link CommandPipelines}
+     * @param message  The chat command, with or without the prefix, e.g. "!creeper"
+     * @param viewer   The sender's ID, see {@link ViewerRegistry}
+     * @param weight   The sender's weight for this message, used by {@link PickerMode#WEIGHTED}
+     * @param force    Run the command straight away, ignoring the blacklist and cooldowns
+     * @since 4.1.0
+     */
+    public static void checkChat(int pipeline, String message, int viewer, double weight, boolean force) {
+
+        CommandTokenizer.Token token = CommandTokenizer.tokenize(message, BotConfig.getCommandPrefix());
+
+        if (token == null) {
+            token = CommandTokenizer.tokenize(message, 0);
+        }
+
+        checkCommandToken(pipeline, message, token, viewer, weight, force);
+
+    }
+
+    private static void checkCommandToken(int pipeline, String message, CommandTokenizer.Token token, int viewer, double weight, boolean force) {
+
+        if (token == null || !ModState.get().chatEnabled(pipeline))
+            return;
+
+        // Arguments are kept, only the command name has to be registered
+        CommandRegistry registry = ChatCommands.getRegistry();
+        int aliasId = registry.findClosestAlias(message, token.nameStart(), token.nameEnd(), ConfigManager.FUZZY_MATCH_DISTANCE.get());
+
+        if (aliasId < 0)
+            return;
 
-        } else if (logMessages) {
+        checkCommand(pipeline, registry, aliasId, token.hasArgs() ? token.args(message) : null, viewer, weight, force, System.nanoTime());
 
-            // If a message is not a command and temp logging is enabled, log the message
-            String timeStamp = new SimpleDateFormat("[HH:mm:ss] ").format(new Date());
-            tempChatLog.add(timeStamp + sender + ": " + message);
+    }
 
-            // Add messages to book when there are enough
-            if (tempChatLog.size() == ConfigManager.BOOK_LENGTH.get()) {
+    /**
+     * Checks a message that was resolved into a command on a bot thread, see {@link ChatPickerHelper#checkChatThreaded}.
+     *
+     * @param pending the resolved message
+     * @since 4.1.0
+     */
+    public static void checkPending(ChatPickerHelper.PendingMessage pending) {
 
-                // Add the chat messages to the book then stop recording chat
-                CommandHandlers.createBook(tempChatLog);
-                tempChatLog.clear();
-                logMessages = false;
+        // Chat that isn't a command was only queued to be logged, so it must not be checked as a command without a prefix
+        if (pending.aliasId() < 0 && CommandTokenizer.tokenize(pending.text(), BotConfig.getCommandPrefix()) == null) {
 
+            if (ModState.get().logMessages()) {
+                logChatMessage(pending.text(), pending.viewer());
             }
             return;
+
+        }
+
+        // Messages that weren't resolved are checked from the start
+        if (pending.aliasId() < 0) {
+            checkChat(pending.text(), pending.viewer(), pending.weight(), pending.force());
+            return;
+        }
+
+        // Messages resolved before the registry was rebuilt already know their pipeline, but have to find their command again
+        if (pending.registry() != ChatCommands.getRegistry()) {
+            checkChat(pending.pipeline(), pending.message(), pending.viewer(), pending.weight(), pending.force());
+            return;
+        }
+
+        if (!ModState.get().chatEnabled(pending.pipeline()))
+            return;
+
+        checkCommand(pending.pipeline(), pending.registry(), pending.aliasId(), pending.text(), pending.viewer(), pending.weight(), pending.force(), pending.receivedAt());
+
+    }
+
+    /**
+     * Checks a command's cooldowns and the blacklist, then runs it or adds it to the pipeline's command window.
+     *
+     * @param pipeline   the pipeline the command was sent to
+     * @param args       the command's arguments, or null if there are none
+     * @param force      run the command straight away, ignoring the blacklist and cooldowns
+     * @param receivedAt the {@link System#nanoTime()} when the message arrived
+     */
+    private static void checkCommand(int pipeline, CommandRegistry registry, int aliasId, String args, int viewer, double weight, boolean force, long receivedAt) {
+
+        int commandId = registry.getCommandId(aliasId);
+
+        ChatStatistics.recordRequest(commandId, viewer);
+
+        // Use the registered spelling in case the command was misspelled
+        String message;
+        if (args != null) {
+            message = registry.getAlias(aliasId) + " " + args;
+        } else {
+            message = registry.getAlias(aliasId);
+        }
+
+        // Cooldowns and the commands per minute limit apply to everyone except the broadcaster
+        if (!force) {
+
+            if (CommandRateLimiter.isOnCooldown(commandId, receivedAt)) {
+                Main.logger.info(new TranslatableComponent("exception.twitchmod.command_on_cooldown", message));
+                return;
+            }
+            if (CommandRateLimiter.isRateLimited(receivedAt)) {
+                Main.logger.info(new TranslatableComponent("exception.twitchmod.command_rate_limited", message));
+                return;
+            }
+
         }
 
-        // Skip checking if force commands is enabled
-        if (forceCommands || instantCommands) {
+        // Skip checking if the command is forced or frenzy mode is on
+        if (force || ModState.get().instantCommands(pipeline)) {
 
-            doCommandMultiplayer(message, sender);
+            doCommandMultiplayer(pipeline, message, viewer);
             return;
 
         }
 
+        CommandPipeline target = CommandPipelines.get(pipeline);
+        String lastCommand = target.lastCommand;
+
 
         // Only add the message if it is not blacklisted, and if the command isn't the same as the last
-        if (BlacklistSystem.isBlacklisted(message)) {
-            Main.logger.info(new TranslatableComponent("exception.twitchmod.command_blacklisted", message));
+        if (registry.isBlacklisted(aliasId)) {
+            Main.logger.info(new TranslatableComponent("exception.twitchmod.command_blacklisted", registry.getAlias(aliasId)));
             return;
         }
         if (lastCommand != null && ConfigManager.ENABLE_COOLDOWN.get()) {
 
             if (!message.equalsIgnoreCase(lastCommand)) {
 
-                chatBuffer.add(message);
-                chatSenderBuffer.add(sender);
+                target.getWindow().add(message, commandId, viewer, weight);
+                CommandPipelines.markWaiting(pipeline);
 
             } else {
                 Main.logger.info(new TranslatableComponent("exception.twitchmod.command_on_cooldown", message));
@@ -96,8 +218,28 @@ public class ChatPicker {
 
         } else {
 
-            chatBuffer.add(message);
-            chatSenderBuffer.add(sender);
+            target.getWindow().add(message, commandId, viewer, weight);
+            CommandPipelines.markWaiting(pipeline);
+
+        }
+
+    }
+
+    /**
+     * Adds a message that isn't a command to the chat log, and writes the log into a book when there are enough messages.
+     */
+    private static void logChatMessage(String message, int viewer) {
+
+        String timeStamp = new SimpleDateFormat("[HH:mm:ss] ").format(new Date());
+        tempChatLog.add(timeStamp + ViewerRegistry.getName(viewer) + ": " + message);
+
+        // Add messages to book when there are enough
+        if (tempChatLog.size() == ConfigManager.BOOK_LENGTH.get()) {
+
+            // Add the chat messages to the book then stop recording chat
+            CommandHandlers.createBook(PlayerHelper.player(), tempChatLog);
+            tempChatLog.clear();
+            ModState.update(state -> state.withLogMessages(false));
 
         }
 
@@ -105,81 +247,123 @@ public class ChatPicker {
 
 
     /**
-     * Attempts to run a command for every player in the affected players list.
+     * Attempts to run a command for every player a pipeline targets.
      *
+     * @param pipeline The pipeline's ID, see {@link CommandPipelines}
      * @param message The chat command, e.g. "!creeper"
-     * @param sender  The sender's name, which is used in some commands.
+     * @param viewer  The sender's ID, see {@link ViewerRegistry}. Some commands use the sender's name.
      * @return If the command doesn't run, then this method returns false.
      * @since 3.5.0
      */
-    public static boolean doCommandMultiplayer(String message, String sender) {
+    public static boolean doCommandMultiplayer(int pipeline, String message, int viewer) {
+        return doCommandMultiplayer(pipeline, message, viewer, CommandPipelines.get(pipeline).getTargetPlayers());
+    }
+
+    private static boolean doCommandMultiplayer(int pipeline, String message, int viewer, List<ServerPlayer> targets) {
+
+        boolean ran = doCommandForAffectedPlayers(pipeline, message, viewer, targets);
+
+        if (ran) {
+            commandRan(message);
+        }
+
+        return ran;
 
-        // Get all of the players from a list and set the player's username before executing.
-        // This means we can have multiple players affected!
+    }
+
+    private static boolean doCommandForAffectedPlayers(int pipeline, String message, int viewer, List<ServerPlayer> targets) {
 
-        if (PlayerHelper.defaultServer.getPlayerList().getPlayers().size() < 2 || PlayerHelper.affectedPlayers.get().size() > 2) {
-            return doCommand(message, sender);
+        // Each player is passed to the command, so we can have multiple players affected!
+        if (targets.isEmpty()) {
+            return false;
         }
 
+        CommandRegistry registry = ChatCommands.getRegistry();
+        CommandTokenizer.Token token = CommandTokenizer.tokenize(message, 0);
+        int id = token == null ? -1 : registry.findCommand(message, token.nameStart(), token.nameEnd());
+        boolean ran = false;
+
         try {
-            for (String playername : PlayerHelper.affectedPlayers.get()) {
+            for (ServerPlayer player : targets) {
 
-                PlayerHelper.setUsername(playername);
+                // Players the command wouldn't do anything for are skipped, e.g. only the players holding an item lose it
+                if (id >= 0 && !registry.canRun(id, player)) {
+                    continue;
+                }
 
-                if (!doCommand(message, sender)) {
+                if (!doCommand(pipeline, message, viewer, player)) {
                     return false;
                 }
 
+                ran = true;
+
             }
 
-            return true;
+            return ran;
 
         } catch (Exception e) {
             return false;
         }
     }
 
+    /**
+     * Starts the command's cooldown, counts it towards the commands per minute limit, and adds it to the statistics.
+     */
+    private static void commandRan(String message) {
+
+        CommandTokenizer.Token token = CommandTokenizer.tokenize(message, 0);
+
+        if (token == null) {
+            return;
+        }
+
+        int id = ChatCommands.getRegistry().findCommand(message, token.nameStart(), token.nameEnd());
+
+        if (id >= 0) {
+            CommandRateLimiter.recordRun(id, System.nanoTime());
+            ChatStatistics.recordExecution(id);
+        }
+
+    }
+
     /**
      * Attempts to parse and then execute a command.
      *
-     * @param message The chat command, e.g. "!creeper"
-     * @param sender  The sender's name, which is used in some commands.
+     * @param pipeline The pipeline the command was sent to, see {@link CommandPipelines}
+     * @param message  The chat command, e.g. "!creeper"
+     * @param viewer   The sender's ID, see {@link ViewerRegistry}. Some commands use the sender's name.
+     * @param player   The player the command affects
      * @return If the command doesn't run, then this method returns false.
      */
-    public static boolean doCommand(String message, String sender) {
+    public static boolean doCommand(int pipeline, String message, int viewer, ServerPlayer player) {
 
-        if (!PlayerHelper.player().level.isClientSide()) {
+        if (!player.level.isClientSide()) {
 
-            // If the command contains a space, everything after the space is treated like an argument.
-            // We chop of the arguments, and check the map for the command.
+            // Everything after the command name is treated like an argument, so functions are only sent the part they need.
+            // e.g. showMessageBox() is sent "hello there" rather than the whole message "messagebox hello there".
+            CommandTokenizer.Token token = CommandTokenizer.tokenize(message, 0);
 
-            // UPDATE: we now use the second part of this split to avoid cutting the commands off the beginning in actual functions.
-            // e.g. before, showMessageBox() would be sent the whole message from twitch chat, and then substring the word "messagebox".
+            if (token == null) {
+                return false;
+            }
 
-            // Trim to avoid splitting on accidental spaces
-            message = message.trim();
+            ChatCommand command = ChatCommands.getCommand(message, token);
 
-            String commandString;
             String argString;
-            if (message.contains(" ")) {
-
-                // Split at the space
-                String[] split = message.split("\\s+");
-
-                commandString = split[0]; // Before space (e.g. "messagebox")
-                argString = message.substring(commandString.length()).trim();
-
+            if (token.hasArgs()) {
+                argString = token.args(message);
             } else {
-                commandString = message;
-                argString = I18n.get("gui.twitchmod.blank_message_placeholder" + CommandHandlers.rand.nextInt(1, 3), sender);
+                argString = I18n.get("gui.twitchmod.blank_message_placeholder" + CommandHandlers.rand.nextInt(1, 3), ViewerRegistry.getName(viewer));
             }
 
-            // Special commands below have extra arguments, so they are registered here.
-            ChatCommands.initDynamicCommands(argString, sender);
+            message = token.command(message);
+
+            // Record the blocks the command changes so they can be undone
+            BlockEditJournal.startChange();
 
             try {
-                // Invoke command from command map
-                ChatCommands.commandMap.get(commandString).run();
+                // Invoke command from command map, passing in everything that changes between runs
+                command.execute(new CommandInvocation(argString, viewer, pipeline, player));
 
                 if (ConfigManager.SHOW_COMMANDS_IN_CHAT.get()) {
                     if (ConfigManager.SHOW_CHAT_MESSAGES.get()) {
@@ -187,16 +371,18 @@ public class ChatPicker {
                     }
                 }
                 else{
-                    CommandHandlers.broadcastMessage(new TranslatableComponent("gui.twitchmod.chat.command_thanks", sender ));
+                    CommandHandlers.broadcastMessage(new TranslatableComponent("gui.twitchmod.chat.command_thanks", ViewerRegistry.getName(viewer)));
                 }
                 BotCommon.sendBotMessage(I18n.get("gui.twitchmod.chat.command_chosen", BotConfig.getCommandPrefix() + message));
 
                 // Below will not be executed if the command does not run
-                lastCommand = message;
+                CommandPipelines.get(pipeline).lastCommand = message;
                 return true;
 
             } catch (Exception e) {
-                commandFailed();
+                Main.logger.error(new TranslatableComponent("exception.twitchmod.command_failed").getString(), e);
+            } finally {
+                BlockEditJournal.endChange();
             }
 
         }
@@ -206,47 +392,82 @@ public class ChatPicker {
     }
 
     /**
-     * Picks a random chat message, and checks if it is a command.
-     * If the chat message is a command, it will be run. Otherwise, a new message is picked.
+     * Picks a chat message from a pipeline's window using the configured {@link PickerMode}, and runs it.
+     * Commands that can't run for any of the targeted players right now, or are on cooldown, are removed from the window first, so the pick is only made from commands that should work.
+     * If the chosen command still fails, the next one is picked, until one runs or the window is empty.
+     *
+     * @param pipeline the pipeline's ID, see {@link CommandPipelines}
      */
-    public static void pickRandomChat() {
-
-        if (!chatBuffer.isEmpty()) {
+    public static void pickRandomChat(int pipeline) {
 
-            String message;
-            String sender;
-            Random rand = new Random();
-            int listRandom = rand.nextInt(chatBuffer.size());
+        CommandWindow window = CommandPipelines.get(pipeline).getWindow();
 
-            message = chatBuffer.get(listRandom);
-            sender = chatSenderBuffer.get(listRandom);
+        long now = System.nanoTime();
 
-            ChatCommands.commandHasExecuted = doCommandMultiplayer(message, sender);
+        // Leave the window as it is until the commands per minute limit allows another command
+        if (window.isEmpty() || CommandRateLimiter.isRateLimited(now)) {
+            return;
+        }
 
-            // If command is invalid
-            if (!ChatCommands.commandHasExecuted) {
+        // Check each command's condition and cooldown once per pick, however many times it was sent
+        // Look up the players once for the whole pick, and keep commands that would do something for any of them
+        CommandRegistry registry = ChatCommands.getRegistry();
+        List<ServerPlayer> targets = CommandPipelines.get(pipeline).getTargetPlayers();
+        byte[] checked = new byte[registry.getCommandCount()];
 
-                chatBuffer.remove(listRandom);
-                commandFailed();
+        window.removeIf(message -> !canRun(registry, message, targets, now, checked));
 
-            }
+        ChatCommands.commandHasExecuted = false;
+        CommandWindow.Candidate candidate;
 
-            chatBuffer.clear();
+        // Every failed pick removes a candidate, so this runs at most once per command in the window
+        while (!ChatCommands.commandHasExecuted && (candidate = window.pick()) != null) {
+            ChatCommands.commandHasExecuted = doCommandMultiplayer(pipeline, candidate.message(), candidate.viewer(), targets);
+        }
 
+        if (!ChatCommands.commandHasExecuted) {
+            Main.logger.error(new TranslatableComponent("exception.twitchmod.command_failed").getString());
         }
 
+        window.clear();
+
     }
 
-    public static void commandFailed() {
+    /**
+     * @param checked the result for each command ID so far: 0 if not checked yet, 1 if it can run, 2 if it can't
+     * @return true if the chat command is registered, its condition passes for at least one of the players and it isn't on cooldown
+     */
+    private static boolean canRun(CommandRegistry registry, String message, List<ServerPlayer> players, long now, byte[] checked) {
+
+        CommandTokenizer.Token token = CommandTokenizer.tokenize(message, 0);
 
-        if (!ChatCommands.commandHasExecuted) {
-            if (!chatBuffer.isEmpty()) {
-                // Choose another if the list is big enough
-                pickRandomChat();
-            } else {
-                Main.logger.error(new TranslatableComponent("exception.twitchmod.command_failed").getString());
+        if (token == null) {
+            return false;
+        }
+
+        int id = registry.findCommand(message, token.nameStart(), token.nameEnd());
+
+        if (id < 0) {
+            return false;
+        }
+
+        if (checked[id] == 0) {
+
+            checked[id] = 2;
+
+            if (!CommandRateLimiter.isOnCooldown(id, now)) {
+                for (ServerPlayer player : players) {
+                    if (registry.canRun(id, player)) {
+                        checked[id] = 1;
+                        break;
+                    }
+                }
             }
+
         }
 
+        return checked[id] == 1;
+
     }
+
 }
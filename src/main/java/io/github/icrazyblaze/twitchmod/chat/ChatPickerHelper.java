@@ -1,31 +1,148 @@
 package io.github.icrazyblaze.twitchmod.chat;
 
+import io.github.icrazyblaze.twitchmod.Main;
+import io.github.icrazyblaze.twitchmod.config.BotConfig;
+import io.github.icrazyblaze.twitchmod.config.ConfigManager;
+import io.github.icrazyblaze.twitchmod.util.ModState;
+import net.minecraft.network.chat.TranslatableComponent;
 import net.minecraft.util.thread.BlockableEventLoop;
 import net.minecraftforge.common.util.LogicalSidedProvider;
 import net.minecraftforge.fml.LogicalSide;
 
 public class ChatPickerHelper {
 
+    private static volatile ChatIngestQueue<PendingMessage> ingestQueue = null;
+
     /**
      * Runs checkChat on the server thread, which is necessary to avoid crashes and
      * client/server related issues.
+     * Messages from the bot threads are resolved into commands on the bot thread, and only the result is put into a
+     * bounded ring buffer which is drained every tick by {@link io.github.icrazyblaze.twitchmod.util.timers.TimerSystem},
+     * instead of submitting a task per message.
      *
-     * @param message The chat command, e.g. "!creeper"
-     * @param sender  The sender's name, which is used in some commands.
+     * @param message  The chat command, e.g. "!creeper"
+     * @param viewer   The sender's ID, see {@link ViewerRegistry}
+     * @param weight   The sender's weight, see {@link CommandWeights#getViewerWeight}
+     * @param force    Run the command straight away, ignoring the blacklist and cooldowns (used by the broadcaster for testing)
      * @see ChatPicker::checkChat
      * @since 3.5.0
      */
-    public static void checkChatThreaded(String message, String sender) {
-
-        // Add command to queue
-        Runnable runnable = (() -> ChatPicker.checkChat(message, sender));
+    public static void checkChatThreaded(String message, int viewer, double weight, boolean force) {
 
         // Only run on main (server) thread
         BlockableEventLoop<?> executor = LogicalSidedProvider.WORKQUEUE.get(LogicalSide.SERVER);
         if (!executor.isSameThread()) {
-            executor.execute(runnable);
+
+            PendingMessage pending = resolve(message, viewer, weight, force);
+
+            if (pending != null) {
+                getIngestQueue().offer(pending, ConfigManager.INGEST_OVERFLOW_POLICY.get());
+            }
+
         } else {
-            runnable.run();
+            ChatPicker.checkChat(message, viewer, weight, force);
+        }
+
+    }
+
+    /**
+     * Does the parts of checkChat that don't change the game on the bot thread: removing the prefix, finding the pipeline and the command,
+     * and checking the blacklist. The registry and blacklist are immutable snapshots, so they can be read from any thread.
+     * Cooldowns are still checked on the server thread, as they depend on which commands have run.
+     *
+     * @return the resolved command, the whole message if it can only be checked on the server thread, or null if it should be ignored
+     * @since 4.1.0
+     */
+    private static PendingMessage resolve(String message, int viewer, double weight, boolean force) {
+
+        long now = System.nanoTime();
+        ModState.Snapshot state = ModState.get();
+        CommandTokenizer.Token token = CommandTokenizer.tokenize(message, BotConfig.getCommandPrefix());
+
+        // Messages that aren't commands are only needed while chat is being logged for a book
+        if (token == null) {
+            return state.logMessages() ? new PendingMessage(null, -1, message, CommandPipelines.DEFAULT, viewer, weight, force, now) : null;
+        }
+
+        CommandRegistry registry = ChatCommands.getFrozenRegistry();
+
+        // Commands are still being registered, so the server thread has to check the whole message
+        if (registry == null) {
+            return new PendingMessage(null, -1, message, CommandPipelines.DEFAULT, viewer, weight, force, now);
+        }
+
+        // A keyword before the command sends it to that player's pipeline, e.g. "!red creeper"
+        int pipeline = CommandPipelines.route(message, token);
+
+        if (pipeline != CommandPipelines.DEFAULT && (token = CommandTokenizer.tokenize(message, token.nameEnd())) == null) {
+            return null;
+        }
+
+        int aliasId = registry.findClosestAlias(message, token.nameStart(), token.nameEnd(), ConfigManager.FUZZY_MATCH_DISTANCE.get());
+
+        if (aliasId < 0) {
+            return null;
+        }
+
+        if (registry.isBlacklisted(aliasId) && !force && !state.instantCommands(pipeline)) {
+            Main.logger.info(new TranslatableComponent("exception.twitchmod.command_blacklisted", registry.getAlias(aliasId)));
+            return null;
+        }
+
+        return new PendingMessage(registry, aliasId, token.hasArgs() ? token.args(message) : null, pipeline, viewer, weight, force, now);
+
+    }
+
+    /**
+     * Runs checkChat for queued messages, up to the configured limit per tick. Must be called on the server thread.
+     *
+     * @since 4.1.0
+     */
+    public static void drainIngestQueue() {
+        getIngestQueue().drain(ConfigManager.INGEST_DRAIN_PER_TICK.get(), ChatPicker::checkPending);
+    }
+
+    public static ChatIngestQueue<PendingMessage> getIngestQueue() {
+
+        // Created on first use so that the size is read after the config has loaded
+        if (ingestQueue == null) {
+            synchronized (ChatPickerHelper.class) {
+                if (ingestQueue == null) {
+                    ingestQueue = new ChatIngestQueue<>(ConfigManager.INGEST_QUEUE_SIZE.get());
+                }
+            }
+        }
+
+        return ingestQueue;
+
+    }
+
+    /**
+     * A chat message waiting to be checked on the server thread, with the command already found on the bot thread.
+     *
+     * @param registry   the registry the command was found in, or null if the message wasn't resolved
+     * @param aliasId    the alias that was found in the registry, or -1 if the message wasn't resolved
+     * @param text       the command's arguments (null if there are none), or the whole message if it wasn't resolved
+     * @param pipeline   the pipeline the command was sent to, see {@link CommandPipelines}
+     * @param viewer     the sender's ID, see {@link ViewerRegistry}
+     * @param force      whether the command ignores the blacklist and cooldowns
+     * @param receivedAt the {@link System#nanoTime()} when the message arrived
+     */
+    public record PendingMessage(CommandRegistry registry, int aliasId, String text, int pipeline, int viewer,
+                                 double weight, boolean force, long receivedAt) {
+
+        /**
+         * @return the message as it would have been sent without its keyword, using the registered spelling of the command
+         */
+        public String message() {
+
+            if (aliasId < 0) {
+                return text;
+            }
+
+            String command = BotConfig.getCommandPrefix() + registry.getAlias(aliasId);
+            return text == null ? command : command + " " + text;
+
         }
 
     }
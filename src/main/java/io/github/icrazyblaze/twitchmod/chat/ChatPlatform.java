@@ -0,0 +1,15 @@
+package io.github.icrazyblaze.twitchmod.chat;
+
+/**
+ * Where a chat command came from.
+ *
+ * @since 4.1.0
+ */
+public enum ChatPlatform {
+    TWITCH,
+    DISCORD,
+    /**
+     * Commands started from inside the game, e.g. /ttv test or a dice roll.
+     */
+    MINECRAFT
+}
@@ -0,0 +1,119 @@
+package io.github.icrazyblaze.twitchmod.chat;
+
+import io.github.icrazyblaze.twitchmod.util.SpaceSaving;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Counts which commands chat asks for, which ones actually run, and which viewers send the most commands.
+ * Memory is fixed however long the stream is: commands are counted exactly in arrays indexed by command ID,
+ * and viewers are counted approximately with {@link SpaceSaving}, which only keeps the top senders.
+ * This class is only used from the server thread.
+ *
+ * @see io.github.icrazyblaze.twitchmod.command.StatsCommand
+ * @since 4.1.0
+ */
+public class ChatStatistics {
+
+    // Enough viewers to find the top few reliably in a busy chat
+    private static final int TRACKED_SENDERS = 256;
+
+    private static final SpaceSaving topSenders = new SpaceSaving(TRACKED_SENDERS);
+    private static CommandRegistry countsFor = null;
+    private static long[] requested = new long[0];
+    private static long[] executed = new long[0];
+
+    /**
+     * Counts a command sent in chat, whether or not it ends up running.
+     *
+     * @param commandId the command's ID in the current registry
+     * @param viewerId  the viewer who sent it, see {@link ViewerRegistry}
+     */
+    public static void recordRequest(int commandId, int viewerId) {
+
+        updateRegistry();
+        requested[commandId]++;
+        topSenders.add(viewerId);
+
+    }
+
+    /**
+     * Counts a command that ran.
+     *
+     * @param commandId the command's ID in the current registry
+     */
+    public static void recordExecution(int commandId) {
+
+        updateRegistry();
+        executed[commandId]++;
+
+    }
+
+    /**
+     * @param limit how many commands to return
+     * @return the most requested commands, with how many times each one ran
+     */
+    public static List<CommandCount> getTopCommands(int limit) {
+
+        CommandRegistry registry = updateRegistry();
+        List<CommandCount> counts = new ArrayList<>();
+
+        for (int id = 0; id < requested.length; id++) {
+            if (requested[id] > 0 || executed[id] > 0) {
+                counts.add(new CommandCount(registry.getCommandName(id), requested[id], executed[id]));
+            }
+        }
+
+        counts.sort((a, b) -> Long.compare(b.requested(), a.requested()));
+        return counts.subList(0, Math.min(limit, counts.size()));
+
+    }
+
+    /**
+     * @param limit how many viewers to return
+     * @return the IDs of the viewers who sent the most commands, with counts that may be slightly too high
+     */
+    public static List<SpaceSaving.Entry> getTopSenders(int limit) {
+        return topSenders.getTop(limit);
+    }
+
+    /**
+     * @return how many commands have been counted in total
+     */
+    public static long getTotalRequests() {
+        return topSenders.getTotal();
+    }
+
+    public static void reset() {
+
+        topSenders.clear();
+        countsFor = null;
+        updateRegistry();
+
+    }
+
+    private static CommandRegistry updateRegistry() {
+
+        CommandRegistry registry = ChatCommands.getRegistry();
+
+        // Command IDs change when the registry is rebuilt, so the counts start again
+        if (registry != countsFor) {
+            requested = new long[registry.getCommandCount()];
+            executed = new long[registry.getCommandCount()];
+            countsFor = registry;
+        }
+
+        return registry;
+
+    }
+
+    /**
+     * @param name      the command's name
+     * @param requested how many times chat sent the command
+     * @param executed  how many times the command ran
+     */
+    public record CommandCount(String name, long requested, long executed) {
+    }
+
+}
@@ -0,0 +1,54 @@
+package io.github.icrazyblaze.twitchmod.chat;
+
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraft.world.item.ItemStack;
+import net.minecraft.world.item.Items;
+
+/**
+ * Conditions for commands that only do something in certain situations.
+ * These are checked for every command in the window before a pick, so they only read the player's state.
+ *
+ * @see ChatCommands#registerCommand(ChatCommand, java.util.function.Predicate, String...)
+ * @since 4.1.0
+ */
+public class CommandConditions {
+
+    public static boolean hasItems(ServerPlayer player) {
+        return !player.getInventory().isEmpty();
+    }
+
+    public static boolean isHoldingItem(ServerPlayer player) {
+        return !player.getInventory().getSelected().isEmpty();
+    }
+
+    /**
+     * Items with less than 3 durability are skipped, as changing durability removes a random amount up to a third of it.
+     */
+    public static boolean isHoldingDamageableItem(ServerPlayer player) {
+
+        ItemStack currentItem = player.getInventory().getSelected();
+        return currentItem.isDamageableItem() && currentItem.getMaxDamage() >= 3;
+
+    }
+
+    public static boolean isRidingOrSleeping(ServerPlayer player) {
+        return player.isPassenger() || player.isSleeping();
+    }
+
+    public static boolean isWearingArmour(ServerPlayer player) {
+
+        for (ItemStack armourItem : player.getInventory().armor) {
+            if (!armourItem.isEmpty()) {
+                return true;
+            }
+        }
+
+        return false;
+
+    }
+
+    public static boolean canWearPumpkin(ServerPlayer player) {
+        return hasItems(player) && !player.getInventory().getArmor(3).is(Items.CARVED_PUMPKIN);
+    }
+
+}
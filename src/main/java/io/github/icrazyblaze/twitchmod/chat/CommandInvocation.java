@@ -0,0 +1,30 @@
+package io.github.icrazyblaze.twitchmod.chat;
+
+import net.minecraft.server.level.ServerPlayer;
+
+/**
+ * Everything a {@link ChatCommand} needs to know about one run.
+ *
+ * @param args     everything after the command name, or a placeholder message if there were no arguments
+ * @param viewer   the sender's ID, see {@link ViewerRegistry}
+ * @param pipeline the pipeline the command was sent to, see {@link CommandPipelines}
+ * @param player   the player the command affects
+ * @since 4.1.0
+ */
+public record CommandInvocation(String args, int viewer, int pipeline, ServerPlayer player) {
+
+    /**
+     * @return the sender's name
+     */
+    public String sender() {
+        return ViewerRegistry.getName(viewer);
+    }
+
+    /**
+     * @return where the command came from
+     */
+    public ChatPlatform platform() {
+        return ViewerRegistry.getPlatform(viewer);
+    }
+
+}
@@ -0,0 +1,138 @@
+package io.github.icrazyblaze.twitchmod.chat;
+
+import io.github.icrazyblaze.twitchmod.config.ConfigManager;
+import io.github.icrazyblaze.twitchmod.util.PlayerHelper;
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+import net.minecraft.server.level.ServerPlayer;
+
+import java.util.List;
+
+/**
+ * Everything chat needs to run commands for one target on its own: the command window, the last command that ran and the frenzy votes.
+ * The pipeline's timers (peace, frenzy and death) are packed into {@link io.github.icrazyblaze.twitchmod.util.ModState} by its ID,
+ * and when its next pick is due is kept by {@link io.github.icrazyblaze.twitchmod.util.timers.TimerSystem}.
+ * <p>
+ * The default pipeline targets the affected players from the config, and gets every command that doesn't start with a keyword.
+ * The other pipelines each target one player, and get the commands that start with their keyword, e.g. "!red creeper".
+ * Everything here is only used from the server thread.
+ *
+ * @see CommandPipelines
+ * @since 4.1.0
+ */
+public class CommandPipeline {
+
+    private final int id;
+    private final String keyword;
+    private final String playerName;
+    final IntOpenHashSet frenzyVotes = new IntOpenHashSet();
+    String lastCommand = null;
+    private CommandWindow window = null;
+    private PickerMode windowMode = null;
+    private int windowSize = 0;
+
+    /**
+     * @param id         the pipeline's index in {@link CommandPipelines}
+     * @param keyword    the keyword that sends commands to this pipeline in lower case, or null for the default pipeline
+     * @param playerName the player this pipeline targets, or null to target the affected players
+     */
+    CommandPipeline(int id, String keyword, String playerName) {
+        this.id = id;
+        this.keyword = keyword;
+        this.playerName = playerName;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * @return the keyword that sends commands to this pipeline, or null for the default pipeline
+     */
+    public String getKeyword() {
+        return keyword;
+    }
+
+    /**
+     * @return true if this pipeline targets the given player, either by name or as one of the affected players
+     */
+    public boolean targets(String name) {
+
+        if (playerName != null) {
+            return playerName.equalsIgnoreCase(name);
+        }
+
+        for (String affected : PlayerHelper.affectedPlayers.get()) {
+            if (affected.equalsIgnoreCase(name)) {
+                return true;
+            }
+        }
+
+        return false;
+
+    }
+
+    /**
+     * Looks up the players a command should affect. The default pipeline affects the main player if there are fewer than 2 players online,
+     * more than 2 affected players, or none of them online. Other pipelines affect their player if they are online.
+     *
+     * @return the players to run a command for, which is empty if nobody is online
+     */
+    public List<ServerPlayer> getTargetPlayers() {
+
+        if (playerName != null) {
+
+            for (ServerPlayer player : PlayerHelper.getPlayers()) {
+                if (player.getGameProfile().getName().equalsIgnoreCase(playerName)) {
+                    return List.of(player);
+                }
+            }
+
+            return List.of();
+
+        }
+
+        List<ServerPlayer> affected = PlayerHelper.getAffectedPlayers();
+
+        if (PlayerHelper.getPlayers().size() < 2 || PlayerHelper.affectedPlayers.get().size() > 2 || affected.isEmpty()) {
+
+            ServerPlayer player = PlayerHelper.player();
+            return player == null ? List.of() : List.of(player);
+
+        }
+
+        return affected;
+
+    }
+
+    /**
+     * @return the player alerts for this pipeline are shown to, or null if nobody it targets is online
+     */
+    public ServerPlayer getMainPlayer() {
+
+        List<ServerPlayer> targets = getTargetPlayers();
+        return targets.isEmpty() ? null : targets.get(0);
+
+    }
+
+    /**
+     * The commands waiting to be picked from, stored in the way that suits the configured {@link PickerMode}.
+     * If the configured mode or size has changed, a new window is created the next time the old one is empty.
+     *
+     * @return the command window
+     */
+    public CommandWindow getWindow() {
+
+        PickerMode mode = ConfigManager.PICKER_MODE.get();
+        int size = ConfigManager.COMMAND_WINDOW_SIZE.get();
+
+        if (window == null || (window.isEmpty() && (mode != windowMode || size != windowSize))) {
+            window = mode.createWindow(size);
+            windowMode = mode;
+            windowSize = size;
+        }
+
+        return window;
+
+    }
+
+}
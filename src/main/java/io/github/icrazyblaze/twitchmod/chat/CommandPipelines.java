@@ -0,0 +1,163 @@
+package io.github.icrazyblaze.twitchmod.chat;
+
+import io.github.icrazyblaze.twitchmod.Main;
+import io.github.icrazyblaze.twitchmod.config.ConfigManager;
+
+import java.util.*;
+
+/**
+ * Gives players on a team stream their own chat commands. Each keyword in the config gets a {@link CommandPipeline} with its own
+ * command window, picks and timers, so "!red creeper" only ever affects red's player, and red's frenzy mode doesn't speed up blue's chat.
+ * Commands without a keyword go to the default pipeline, which works exactly as it did before pipelines were added.
+ * <p>
+ * Pipelines are identified by a small ID (0 is the default pipeline), so their state can be kept in arrays and bit masks.
+ * There can be at most {@value #MAX_PIPELINES}. The pipelines are rebuilt when the config changes, and the bot threads route
+ * messages using an immutable snapshot of them, so no locking is needed to read them.
+ *
+ * @see ChatPicker
+ * @since 4.1.0
+ */
+public class CommandPipelines {
+
+    public static final int DEFAULT = 0;
+    public static final int MAX_PIPELINES = Long.SIZE;
+
+    private static volatile Pipelines pipelines = null;
+    // Pipelines with commands waiting in their window, only used on the server thread
+    private static long waiting = 0;
+
+    /**
+     * @param id a pipeline ID
+     * @return the pipeline, or the default pipeline if the ID is from before the config changed
+     */
+    public static CommandPipeline get(int id) {
+
+        CommandPipeline[] all = getPipelines().all();
+        return id < all.length ? all[id] : all[DEFAULT];
+
+    }
+
+    /**
+     * @return every pipeline, with the default pipeline first
+     */
+    public static List<CommandPipeline> getAll() {
+        return List.of(getPipelines().all());
+    }
+
+    /**
+     * Finds which pipeline a command is for, by checking if its first word is a keyword.
+     *
+     * @param message the chat message
+     * @param token   the first word's offsets in the message, from {@link CommandTokenizer}
+     * @return the pipeline's ID, or {@link #DEFAULT} if the first word isn't a keyword (so it is the command)
+     */
+    public static int route(CharSequence message, CommandTokenizer.Token token) {
+
+        Pipelines current = getPipelines();
+
+        if (current.keywords().isEmpty()) {
+            return DEFAULT;
+        }
+
+        return current.keywords().getOrDefault(ChatCommands.getCommandKey(message, token), DEFAULT);
+
+    }
+
+    /**
+     * @param playerName a player's name
+     * @return the first pipeline with its own keyword that targets the player, or the default pipeline
+     */
+    public static int forPlayer(String playerName) {
+
+        CommandPipeline[] all = getPipelines().all();
+
+        for (int i = 1; i < all.length; i++) {
+            if (all[i].targets(playerName)) {
+                return i;
+            }
+        }
+
+        return DEFAULT;
+
+    }
+
+    /**
+     * Marks a pipeline as having commands to pick from. Must only be called on the server thread.
+     */
+    static void markWaiting(int id) {
+        waiting |= 1L << id;
+    }
+
+    /**
+     * Must only be called on the server thread.
+     *
+     * @return a bit for each pipeline with commands waiting to be picked
+     */
+    public static long getWaiting() {
+        return waiting;
+    }
+
+    /**
+     * Marks a pipeline as having nothing left to pick. Must only be called on the server thread.
+     */
+    public static void clearWaiting(int id) {
+        waiting &= ~(1L << id);
+    }
+
+    private static Pipelines getPipelines() {
+
+        List<? extends String> configured = ConfigManager.PLAYER_KEYWORDS.get();
+        Pipelines current = pipelines;
+
+        if (current != null && current.parsedFrom() == configured) {
+            return current;
+        }
+
+        synchronized (CommandPipelines.class) {
+
+            // Only parse the config list again when it changes, as new pipelines start with empty windows
+            if (pipelines == null || pipelines.parsedFrom() != configured) {
+                pipelines = parsePipelines(configured);
+            }
+
+            return pipelines;
+
+        }
+
+    }
+
+    private static Pipelines parsePipelines(List<? extends String> entries) {
+
+        List<CommandPipeline> all = new ArrayList<>();
+        Map<String, Integer> keywords = new HashMap<>();
+
+        all.add(new CommandPipeline(DEFAULT, null, null));
+
+        for (String entry : entries) {
+
+            int split = entry.indexOf('=');
+            String keyword = entry.substring(0, Math.max(split, 0)).trim().toLowerCase(Locale.ROOT);
+            String playerName = entry.substring(split + 1).trim();
+
+            if (split < 0 || keyword.isEmpty() || playerName.isEmpty() || keywords.containsKey(keyword)) {
+                Main.logger.error("Invalid player keyword: " + entry);
+                continue;
+            }
+            if (all.size() == MAX_PIPELINES) {
+                Main.logger.error("Too many player keywords, ignoring: " + entry);
+                continue;
+            }
+
+            keywords.put(keyword, all.size());
+            all.add(new CommandPipeline(all.size(), keyword, playerName));
+
+        }
+
+        return new Pipelines(entries, all.toArray(new CommandPipeline[0]), Map.copyOf(keywords));
+
+    }
+
+    private record Pipelines(List<? extends String> parsedFrom, CommandPipeline[] all, Map<String, Integer> keywords) {
+    }
+
+}
@@ -0,0 +1,149 @@
+package io.github.icrazyblaze.twitchmod.chat;
+
+import io.github.icrazyblaze.twitchmod.Main;
+import io.github.icrazyblaze.twitchmod.config.ConfigManager;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits how often chat commands can run, with a cooldown for each command and a limit on commands per minute for all of chat.
+ * Commands are checked before they are added to the command window, so spammed commands are dropped straight away.
+ * <p>
+ * Cooldowns are kept in arrays indexed by command ID (see {@link CommandRegistry}), so all aliases of a command share a cooldown.
+ * The global limit is a token bucket, stored as the time the bucket will next be full (the generic cell rate algorithm),
+ * which allows a burst of commands and then one command every (60 / commands_per_minute) seconds.
+ * This class is only used from the server thread.
+ *
+ * @see ChatPicker#checkChat
+ * @since 4.1.0
+ */
+public class CommandRateLimiter {
+
+    private static final long NEVER = Long.MIN_VALUE;
+
+    private static CommandRegistry limitsFor = null;
+    private static List<? extends String> parsedFrom = null;
+    private static int parsedDefault = -1;
+
+    private static long[] cooldownNanos = new long[0];
+    private static long[] lastRunNanos = new long[0];
+    private static long bucketFullAt = NEVER;
+
+    /**
+     * @param commandId the command's ID in the current registry
+     * @param now       the current {@link System#nanoTime()}
+     * @return true if the command ran too recently to run again
+     */
+    public static boolean isOnCooldown(int commandId, long now) {
+
+        updateLimits();
+
+        long lastRun = lastRunNanos[commandId];
+        return lastRun != NEVER && now - lastRun < cooldownNanos[commandId];
+
+    }
+
+    /**
+     * @param now the current {@link System#nanoTime()}
+     * @return true if running another command now would go over the configured commands per minute
+     */
+    public static boolean isRateLimited(long now) {
+
+        int perMinute = ConfigManager.COMMANDS_PER_MINUTE.get();
+
+        if (perMinute <= 0) {
+            return false;
+        }
+
+        long interval = TimeUnit.MINUTES.toNanos(1) / perMinute;
+        long fullAt = Math.max(bucketFullAt, now);
+
+        // The bucket has room while it would be full again within (burst - 1) intervals
+        return fullAt - now > (ConfigManager.COMMAND_BURST.get() - 1) * interval;
+
+    }
+
+    /**
+     * Starts the command's cooldown and takes a token from the bucket. Called whenever a chat command runs.
+     *
+     * @param commandId the command's ID in the current registry
+     * @param now       the current {@link System#nanoTime()}
+     */
+    public static void recordRun(int commandId, long now) {
+
+        updateLimits();
+        lastRunNanos[commandId] = now;
+
+        int perMinute = ConfigManager.COMMANDS_PER_MINUTE.get();
+
+        if (perMinute > 0) {
+            bucketFullAt = Math.max(bucketFullAt, now) + TimeUnit.MINUTES.toNanos(1) / perMinute;
+        }
+
+    }
+
+    /**
+     * Forgets every cooldown and refills the bucket.
+     */
+    public static void reset() {
+
+        Arrays.fill(lastRunNanos, NEVER);
+        bucketFullAt = NEVER;
+
+    }
+
+    private static void updateLimits() {
+
+        CommandRegistry registry = ChatCommands.getRegistry();
+        List<? extends String> configured = ConfigManager.COMMAND_COOLDOWNS.get();
+        int defaultCooldown = ConfigManager.COMMAND_COOLDOWN.get();
+
+        // Command IDs change when the registry is rebuilt, so the cooldowns start again
+        if (registry != limitsFor) {
+
+            lastRunNanos = new long[registry.getCommandCount()];
+            Arrays.fill(lastRunNanos, NEVER);
+
+        } else if (configured == parsedFrom && defaultCooldown == parsedDefault) {
+            return;
+        }
+
+        cooldownNanos = parseCooldowns(registry, configured, defaultCooldown);
+        limitsFor = registry;
+        parsedFrom = configured;
+        parsedDefault = defaultCooldown;
+
+    }
+
+    private static long[] parseCooldowns(CommandRegistry registry, List<? extends String> entries, int defaultCooldown) {
+
+        long[] cooldowns = new long[registry.getCommandCount()];
+        Arrays.fill(cooldowns, TimeUnit.SECONDS.toNanos(defaultCooldown));
+
+        for (String entry : entries) {
+
+            int split = entry.indexOf('=');
+            String name = entry.substring(0, split).trim();
+            int id = registry.findCommand(name, 0, name.length());
+
+            try {
+
+                if (id < 0) {
+                    throw new IllegalArgumentException(name);
+                }
+
+                cooldowns[id] = TimeUnit.MILLISECONDS.toNanos((long) (Double.parseDouble(entry.substring(split + 1).trim()) * 1000));
+
+            } catch (RuntimeException e) {
+                Main.logger.error("Invalid command cooldown: " + entry);
+            }
+
+        }
+
+        return cooldowns;
+
+    }
+
+}
@@ -0,0 +1,355 @@
+package io.github.icrazyblaze.twitchmod.chat;
+
+import io.github.icrazyblaze.twitchmod.util.files.BlacklistSystem;
+import net.minecraft.server.level.ServerPlayer;
+
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * A frozen copy of the registered chat commands, built once after every command has been registered.
+ * <p>
+ * Every alias has an alias ID, and every distinct command has a command ID shared by all of its aliases.
+ * IDs are dense, so anything keyed by command (cooldowns, counters, the blacklist) can use a plain array or bitset instead of string hashing.
+ * Aliases are looked up with a char trie which ignores case, so looking up part of a chat message doesn't copy it.
+ *
+ * @see ChatCommands#getRegistry()
+ * @since 4.1.0
+ */
+public class CommandRegistry {
+
+    // Aliases in sorted order; an alias ID is an index into these arrays
+    private final String[] aliases;
+    private final int[] aliasCommands;
+
+    // Handlers, conditions and primary names indexed by command ID
+    private final ChatCommand[] handlers;
+    private final Predicate<ServerPlayer>[] conditions;
+    private final String[] commandNames;
+
+    /*
+    Trie nodes are stored in arrays. The children of a node are stored next to each other, sorted by their edge character,
+    between childStart and childEnd. Node 0 is the root.
+    */
+    private final int[] childStart;
+    private final int[] childEnd;
+    private final char[] edges;
+    private final int[] nodeAliases;
+
+    private final List<String> sortedAliases;
+    private volatile CommandSpellChecker spellChecker = null;
+    private volatile BlacklistView blacklistView = new BlacklistView(null, new BitSet(), List.of());
+
+    @SuppressWarnings("unchecked")
+    private CommandRegistry(Map<String, ChatCommands.Registration> commandMap) {
+
+        // Command IDs follow registration order, aliases registered together share an ID
+        Map<ChatCommands.Registration, Integer> commandIds = new IdentityHashMap<>();
+        List<ChatCommands.Registration> registrations = new ArrayList<>();
+        List<String> nameList = new ArrayList<>();
+
+        for (Map.Entry<String, ChatCommands.Registration> entry : commandMap.entrySet()) {
+            if (!commandIds.containsKey(entry.getValue())) {
+                commandIds.put(entry.getValue(), registrations.size());
+                registrations.add(entry.getValue());
+                nameList.add(entry.getKey());
+            }
+        }
+
+        handlers = new ChatCommand[registrations.size()];
+        conditions = new Predicate[registrations.size()];
+        for (int i = 0; i < handlers.length; i++) {
+            handlers[i] = registrations.get(i).command();
+            conditions[i] = registrations.get(i).canRun();
+        }
+        commandNames = nameList.toArray(new String[0]);
+
+        aliases = commandMap.keySet().toArray(new String[0]);
+        Arrays.sort(aliases);
+        sortedAliases = List.of(aliases);
+
+        aliasCommands = new int[aliases.length];
+        int maxNodes = 1;
+        for (int i = 0; i < aliases.length; i++) {
+            aliasCommands[i] = commandIds.get(commandMap.get(aliases[i]));
+            maxNodes += aliases[i].length();
+        }
+
+        childStart = new int[maxNodes];
+        childEnd = new int[maxNodes];
+        edges = new char[maxNodes];
+        nodeAliases = new int[maxNodes];
+        Arrays.fill(nodeAliases, -1);
+
+        buildTrie();
+
+    }
+
+    /**
+     * Builds a registry from a map of lower case aliases to commands.
+     *
+     * @param commandMap the registered commands
+     * @return a registry which won't change if the map changes
+     */
+    public static CommandRegistry freeze(Map<String, ChatCommands.Registration> commandMap) {
+        return new CommandRegistry(commandMap);
+    }
+
+    private void buildTrie() {
+
+        // Breadth first, so that all children of a node are allocated together.
+        // Each queue entry is a node, the range of sorted aliases that share its prefix, and its depth.
+        int[] queue = new int[childStart.length * 4];
+        int head = 0;
+        int tail = 0;
+        int nodeCount = 1;
+
+        queue[tail++] = 0;
+        queue[tail++] = 0;
+        queue[tail++] = aliases.length;
+        queue[tail++] = 0;
+
+        while (head < tail) {
+
+            int node = queue[head++];
+            int start = queue[head++];
+            int end = queue[head++];
+            int depth = queue[head++];
+
+            // The alias that ends at this node sorts before any longer alias with the same prefix
+            if (start < end && aliases[start].length() == depth) {
+                nodeAliases[node] = start;
+                start++;
+            }
+
+            childStart[node] = nodeCount;
+
+            int groupStart = start;
+            while (groupStart < end) {
+
+                char edge = aliases[groupStart].charAt(depth);
+                int groupEnd = groupStart + 1;
+
+                while (groupEnd < end && aliases[groupEnd].charAt(depth) == edge) {
+                    groupEnd++;
+                }
+
+                int child = nodeCount++;
+                edges[child] = edge;
+
+                queue[tail++] = child;
+                queue[tail++] = groupStart;
+                queue[tail++] = groupEnd;
+                queue[tail++] = depth + 1;
+
+                groupStart = groupEnd;
+
+            }
+
+            childEnd[node] = nodeCount;
+
+        }
+
+    }
+
+    /**
+     * Finds the alias that matches part of a message, ignoring case. This does not allocate.
+     *
+     * @param text  the text containing the alias
+     * @param start where the alias starts
+     * @param end   where the alias ends (exclusive)
+     * @return the alias ID, or -1 if there is no such alias
+     */
+    public int findAlias(CharSequence text, int start, int end) {
+
+        int node = 0;
+
+        for (int i = start; i < end; i++) {
+
+            char c = Character.toLowerCase(text.charAt(i));
+
+            // Binary search the node's children, which are sorted by edge
+            int low = childStart[node];
+            int high = childEnd[node] - 1;
+            int found = -1;
+
+            while (low <= high) {
+
+                int mid = (low + high) >>> 1;
+
+                if (edges[mid] < c) {
+                    low = mid + 1;
+                } else if (edges[mid] > c) {
+                    high = mid - 1;
+                } else {
+                    found = mid;
+                    break;
+                }
+
+            }
+
+            if (found < 0) {
+                return -1;
+            }
+
+            node = found;
+
+        }
+
+        return nodeAliases[node];
+
+    }
+
+    /**
+     * @return the command ID for the alias that matches part of a message, or -1 if there is no such alias
+     */
+    public int findCommand(CharSequence text, int start, int end) {
+
+        int alias = findAlias(text, start, end);
+        return alias < 0 ? -1 : aliasCommands[alias];
+
+    }
+
+    /**
+     * Finds the alias that matches part of a message, or the alias it is most likely a misspelling of.
+     * An exact match is always tried first. Names shorter than 4 characters must match exactly,
+     * and longer names allow one more typo for every 4 characters, up to the given limit.
+     *
+     * @param text        the text containing the alias
+     * @param start       where the alias starts
+     * @param end         where the alias ends (exclusive)
+     * @param maxDistance the most typos allowed, 0 for exact matches only
+     * @return the alias ID, or -1 if there is no alias that is close enough
+     * @see CommandSpellChecker
+     */
+    public int findClosestAlias(CharSequence text, int start, int end, int maxDistance) {
+
+        int alias = findAlias(text, start, end);
+
+        if (alias >= 0 || maxDistance <= 0) {
+            return alias;
+        }
+
+        return getSpellChecker().findClosest(text, start, end, Math.min(maxDistance, (end - start) / 4));
+
+    }
+
+    private CommandSpellChecker getSpellChecker() {
+
+        // Only built if fuzzy matching is used
+        CommandSpellChecker checker = spellChecker;
+
+        if (checker == null) {
+            checker = new CommandSpellChecker(aliases);
+            spellChecker = checker;
+        }
+
+        return checker;
+
+    }
+
+    public String getAlias(int aliasId) {
+        return aliases[aliasId];
+    }
+
+    public int getCommandId(int aliasId) {
+        return aliasCommands[aliasId];
+    }
+
+    public ChatCommand getHandler(int commandId) {
+        return handlers[commandId];
+    }
+
+    /**
+     * Checks the command's condition, if it has one.
+     *
+     * @param commandId the command to check
+     * @param player    the player the command would run for
+     * @return true if the command would do something, false if it would fail or there is no player
+     * @see ChatCommands#registerCommand(ChatCommand, Predicate, String...)
+     */
+    public boolean canRun(int commandId, ServerPlayer player) {
+
+        if (player == null) {
+            return false;
+        }
+
+        Predicate<ServerPlayer> condition = conditions[commandId];
+        return condition == null || condition.test(player);
+
+    }
+
+    /**
+     * @return the first alias the command was registered with
+     */
+    public String getCommandName(int commandId) {
+        return commandNames[commandId];
+    }
+
+    public int getAliasCount() {
+        return aliases.length;
+    }
+
+    public int getCommandCount() {
+        return handlers.length;
+    }
+
+    /**
+     * @return every alias in sorted order, including blacklisted ones
+     */
+    public List<String> getAliases() {
+        return sortedAliases;
+    }
+
+    /**
+     * Checks the blacklist by alias ID. The blacklist is turned into a bitset once each time it changes.
+     *
+     * @param aliasId the alias to check
+     * @return true if the alias is on the blacklist
+     */
+    public boolean isBlacklisted(int aliasId) {
+        return getBlacklistView().blacklisted().get(aliasId);
+    }
+
+    /**
+     * @return every alias in sorted order, without blacklisted ones. The list is rebuilt only when the blacklist changes.
+     */
+    public List<String> getAllowedAliases() {
+        return getBlacklistView().allowed();
+    }
+
+    private BlacklistView getBlacklistView() {
+
+        BlacklistView view = blacklistView;
+        List<String> blacklist = BlacklistSystem.getBlacklist();
+
+        // The blacklist is an immutable snapshot which is replaced on every change, so comparing references is enough
+        if (view.source() != blacklist) {
+
+            BitSet blacklisted = new BitSet(aliases.length);
+            List<String> allowed = new ArrayList<>(aliases.length);
+
+            for (int i = 0; i < aliases.length; i++) {
+                if (BlacklistSystem.isBlacklisted(aliases[i])) {
+                    blacklisted.set(i);
+                } else {
+                    allowed.add(aliases[i]);
+                }
+            }
+
+            view = new BlacklistView(blacklist, blacklisted, List.copyOf(allowed));
+            blacklistView = view;
+
+        }
+
+        return view;
+
+    }
+
+    /**
+     * The blacklist as seen by this registry. The bitset is never modified after it is published.
+     */
+    private record BlacklistView(List<String> source, BitSet blacklisted, List<String> allowed) {
+    }
+
+}
@@ -0,0 +1,143 @@
+package io.github.icrazyblaze.twitchmod.chat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Predicate;
+
+/**
+ * A fixed-size uniform sample of the chat commands received since the last pick (reservoir sampling, Algorithm R).
+ * However many commands arrive, every one of them has the same chance of being in the reservoir,
+ * so picking uniformly from the reservoir is the same as picking uniformly from all of chat, while memory stays fixed.
+ *
+ * @see PickerMode#RANDOM
+ * @since 4.1.0
+ */
+public class CommandReservoir implements CommandWindow {
+
+    private final String[] messages;
+    private final int[] viewers;
+    private int size = 0;
+    private long seen = 0;
+
+    public CommandReservoir(int capacity) {
+        messages = new String[capacity];
+        viewers = new int[capacity];
+    }
+
+    /**
+     * Offers a command to the reservoir. Once the reservoir is full, the command replaces a random entry with probability capacity / seen.
+     *
+     * @param message  the chat command
+     * @param viewer   the sender's ID, see {@link ViewerRegistry}
+     * @param weight   not used, every command has the same chance
+     */
+    @Override
+    public void add(String message, int commandId, int viewer, double weight) {
+
+        seen++;
+
+        if (size < messages.length) {
+
+            messages[size] = message;
+            viewers[size] = viewer;
+            size++;
+
+        } else {
+
+            long slot = ThreadLocalRandom.current().nextLong(seen);
+
+            if (slot < messages.length) {
+                messages[(int) slot] = message;
+                viewers[(int) slot] = viewer;
+            }
+
+        }
+
+    }
+
+    /**
+     * Chooses a uniformly random entry, and removes it by moving the last entry into its place.
+     * The remaining entries are still a uniform sample.
+     */
+    @Override
+    public Candidate pick() {
+
+        if (size == 0) {
+            return null;
+        }
+
+        int index = ThreadLocalRandom.current().nextInt(size);
+        Candidate candidate = new Candidate(messages[index], viewers[index]);
+
+        size--;
+        messages[index] = messages[size];
+        viewers[index] = viewers[size];
+        messages[size] = null;
+
+        return candidate;
+
+    }
+
+    /**
+     * Removes matching entries by moving later entries down. The remaining entries are still a uniform sample.
+     */
+    @Override
+    public void removeIf(Predicate<String> filter) {
+
+        int kept = 0;
+
+        for (int i = 0; i < size; i++) {
+
+            if (!filter.test(messages[i])) {
+                messages[kept] = messages[i];
+                viewers[kept] = viewers[i];
+                kept++;
+            }
+
+        }
+
+        Arrays.fill(messages, kept, size, null);
+        size = kept;
+
+    }
+
+    @Override
+    public void clear() {
+
+        Arrays.fill(messages, 0, size, null);
+        size = 0;
+        seen = 0;
+
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getCapacity() {
+        return messages.length;
+    }
+
+    /**
+     * @return how many commands have been offered since the reservoir was last cleared
+     */
+    public long getSeenCount() {
+        return seen;
+    }
+
+    /**
+     * @return a copy of the commands currently in the reservoir
+     */
+    @Override
+    public List<String> getContents() {
+        return new ArrayList<>(Arrays.asList(messages).subList(0, size));
+    }
+
+}
@@ -0,0 +1,283 @@
+package io.github.icrazyblaze.twitchmod.chat;
+
+import java.util.Arrays;
+
+/**
+ * Finds the command alias closest to a misspelled chat command, e.g. "creepr" to "creeper".
+ * <p>
+ * Aliases are stored in a BK-tree keyed by Damerau-Levenshtein distance (insertions, deletions, substitutions and swapped neighbouring letters).
+ * The distance is a metric, so a search with a small limit only has to visit a few branches of the tree.
+ * Distances are only worked out as far as the search needs them, which keeps lookups fast for the few hundred aliases we have.
+ *
+ * @see CommandRegistry#findClosestAlias
+ * @since 4.1.0
+ */
+public class CommandSpellChecker {
+
+    // Longer command names are never misspelled commands, so they aren't worth checking
+    private static final int MAX_LENGTH = 32;
+
+    private final String[] aliases;
+    private final int maxAliasLength;
+
+    // Tree nodes are alias IDs. Children are a linked list of siblings, each with the distance to its parent.
+    private final int[] firstChild;
+    private final int[] nextSibling;
+    private final int[] parentDistance;
+    private final int[] maxChildDistance;
+
+    /**
+     * @param aliases lower case aliases, indexed by alias ID
+     */
+    public CommandSpellChecker(String[] aliases) {
+
+        this.aliases = aliases;
+
+        firstChild = new int[aliases.length];
+        nextSibling = new int[aliases.length];
+        parentDistance = new int[aliases.length];
+        maxChildDistance = new int[aliases.length];
+
+        int longest = 0;
+        for (String alias : aliases) {
+            longest = Math.max(longest, alias.length());
+        }
+        maxAliasLength = longest;
+
+        for (int i = 0; i < aliases.length; i++) {
+
+            firstChild[i] = -1;
+            nextSibling[i] = -1;
+
+            if (i > 0) {
+                insert(i);
+            }
+
+        }
+
+    }
+
+    private void insert(int alias) {
+
+        Query query = new Query(aliases[alias], 0, aliases[alias].length(), maxAliasLength);
+        int node = 0;
+
+        while (true) {
+
+            int distance = query.distance(aliases[node], Integer.MAX_VALUE);
+
+            // The alias is only stored once, duplicates can't be registered
+            int child = firstChild[node];
+            while (child >= 0 && parentDistance[child] != distance) {
+                child = nextSibling[child];
+            }
+
+            if (child < 0) {
+
+                parentDistance[alias] = distance;
+                nextSibling[alias] = firstChild[node];
+                firstChild[node] = alias;
+                maxChildDistance[node] = Math.max(maxChildDistance[node], distance);
+                return;
+
+            }
+
+            node = child;
+
+        }
+
+    }
+
+    /**
+     * Finds the single alias that is closest to part of a message.
+     * If two aliases are equally close, neither is returned, as there is no way to know which one was meant.
+     *
+     * @param text        the text containing the command name
+     * @param start       where the command name starts
+     * @param end         where the command name ends (exclusive)
+     * @param maxDistance how many edits are allowed
+     * @return the alias ID, or -1 if no alias is close enough or the closest alias is ambiguous
+     */
+    public int findClosest(CharSequence text, int start, int end, int maxDistance) {
+
+        if (aliases.length == 0 || maxDistance <= 0 || end - start > MAX_LENGTH) {
+            return -1;
+        }
+
+        Query query = new Query(text, start, end, maxAliasLength);
+        int[] stack = new int[aliases.length];
+        int size = 0;
+
+        int best = -1;
+        int bestDistance = maxDistance + 1;
+        boolean ambiguous = false;
+
+        stack[size++] = 0;
+
+        while (size > 0) {
+
+            int node = stack[--size];
+
+            // No child can be within range once the distance is over its largest edge plus the limit
+            int limit = Math.max(bestDistance, maxDistance) + maxChildDistance[node];
+            int distance = query.distance(aliases[node], limit);
+
+            if (distance < bestDistance) {
+                best = node;
+                bestDistance = distance;
+                ambiguous = false;
+            } else if (distance == bestDistance && distance <= maxDistance) {
+                ambiguous = true;
+            }
+
+            // Triangle inequality: matches within range of the query are within range of this distance
+            for (int child = firstChild[node]; child >= 0; child = nextSibling[child]) {
+                if (Math.abs(parentDistance[child] - distance) <= Math.min(bestDistance, maxDistance)) {
+                    stack[size++] = child;
+                }
+            }
+
+        }
+
+        return ambiguous ? -1 : best;
+
+    }
+
+    /**
+     * The text being looked up, in lower case, along with the space needed to work out its distance to each alias.
+     * Everything is allocated once per lookup rather than once per alias.
+     */
+    private static class Query {
+
+        private final char[] text;
+        private final int columns;
+        private final int[] d;
+
+        // The distinct characters in the text, the last row each was seen on, and the distinct index of each text character
+        private final char[] distinct;
+        private final int[] lastRow;
+        private final int[] textCharIndex;
+        private final int distinctCount;
+
+        // The distinct index of each character in the alias being compared, or -1 if the text doesn't have that character
+        private final int[] aliasCharIndex;
+
+        Query(CharSequence source, int start, int end, int maxAliasLength) {
+
+            text = new char[end - start];
+            distinct = new char[text.length];
+            lastRow = new int[text.length];
+            textCharIndex = new int[text.length];
+
+            int count = 0;
+            for (int i = 0; i < text.length; i++) {
+
+                text[i] = Character.toLowerCase(source.charAt(start + i));
+
+                int index = 0;
+                while (index < count && distinct[index] != text[i]) {
+                    index++;
+                }
+                if (index == count) {
+                    distinct[count++] = text[i];
+                }
+                textCharIndex[i] = index;
+
+            }
+
+            distinctCount = count;
+            columns = maxAliasLength + 2;
+            d = new int[(text.length + 2) * columns];
+            aliasCharIndex = new int[maxAliasLength];
+
+        }
+
+        /**
+         * Works out the (unrestricted) Damerau-Levenshtein distance between the text and an alias.
+         * Stops early once the distance is known to be over the limit.
+         *
+         * @return the distance, or a value over the limit if the distance is over the limit
+         */
+        int distance(String alias, int limit) {
+
+            int textLength = text.length;
+            int aliasLength = alias.length();
+
+            if (Math.abs(textLength - aliasLength) > limit) {
+                return limit == Integer.MAX_VALUE ? limit : limit + 1;
+            }
+
+            for (int j = 0; j < aliasLength; j++) {
+
+                char c = alias.charAt(j);
+                int index = distinctCount - 1;
+
+                while (index >= 0 && distinct[index] != c) {
+                    index--;
+                }
+                aliasCharIndex[j] = index;
+
+            }
+
+            Arrays.fill(lastRow, 0, distinctCount, 0);
+
+            /*
+            Lowrance-Wagner algorithm, with d(i, j) stored at d[(i + 1) * columns + j + 1].
+            Row and column 0 are a sentinel which is larger than any real distance, so that swaps can't reach back before the start of either string.
+            */
+            int infinity = textLength + aliasLength;
+            d[0] = infinity;
+            for (int i = 0; i <= textLength; i++) {
+                d[(i + 1) * columns] = infinity;
+                d[(i + 1) * columns + 1] = i;
+            }
+            for (int j = 0; j <= aliasLength; j++) {
+                d[j + 1] = infinity;
+                d[columns + j + 1] = j;
+            }
+
+            for (int i = 1; i <= textLength; i++) {
+
+                char textChar = text[i - 1];
+                int row = (i + 1) * columns;
+                int previousRow = i * columns;
+                int lastMatchColumn = 0;
+                int rowMinimum = Integer.MAX_VALUE;
+
+                for (int j = 1; j <= aliasLength; j++) {
+
+                    // The last row above this one where the text had this alias character
+                    int index = aliasCharIndex[j - 1];
+                    int lastMatchRow = index < 0 ? 0 : lastRow[index];
+
+                    int cost = 1;
+                    int swapColumn = lastMatchColumn;
+                    if (textChar == alias.charAt(j - 1)) {
+                        cost = 0;
+                        lastMatchColumn = j;
+                    }
+
+                    int value = Math.min(d[previousRow + j] + cost, Math.min(d[row + j] + 1, d[previousRow + j + 1] + 1));
+                    value = Math.min(value, d[lastMatchRow * columns + swapColumn] + (i - lastMatchRow - 1) + 1 + (j - swapColumn - 1));
+
+                    d[row + j + 1] = value;
+                    rowMinimum = Math.min(rowMinimum, value);
+
+                }
+
+                lastRow[textCharIndex[i - 1]] = i;
+
+                // Every later value is at least the smallest in this row
+                if (aliasLength > 0 && rowMinimum > limit) {
+                    return rowMinimum;
+                }
+
+            }
+
+            return d[(textLength + 1) * columns + aliasLength + 1];
+
+        }
+
+    }
+
+}
@@ -0,0 +1,192 @@
+package io.github.icrazyblaze.twitchmod.chat;
+
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Predicate;
+
+/**
+ * Counts votes for each command instead of storing every chat message.
+ * Votes are counted by command ID (see {@link CommandRegistry}) in arrays sized to the registry, so every alias of a command
+ * (e.g. "creeper" and "boom") counts towards the same command, and memory doesn't grow with the number of messages.
+ * Only the latest message and sender for each command are kept, so that commands with arguments still have something to run.
+ *
+ * @see PickerMode#PLURALITY
+ * @see PickerMode#PROPORTIONAL
+ * @since 4.1.0
+ */
+public class CommandTally implements CommandWindow {
+
+    private final boolean proportional;
+    private CommandRegistry countsFor = null;
+    private int[] counts = new int[0];
+    private String[] messages = new String[0];
+    private int[] viewers = new int[0];
+    private long total = 0;
+
+    /**
+     * @param proportional if true, commands are drawn with probability proportional to their votes; otherwise the command with the most votes wins
+     */
+    public CommandTally(boolean proportional) {
+        this.proportional = proportional;
+    }
+
+    /**
+     * Adds a vote for the command. The weight is not used, every vote counts once.
+     */
+    @Override
+    public void add(String message, int commandId, int viewer, double weight) {
+
+        updateRegistry();
+
+        counts[commandId]++;
+        messages[commandId] = message;
+        viewers[commandId] = viewer;
+        total++;
+
+    }
+
+    private void updateRegistry() {
+
+        CommandRegistry registry = ChatCommands.getRegistry();
+
+        // Command IDs change when the registry is rebuilt, so the votes start again
+        if (registry != countsFor) {
+            counts = new int[registry.getCommandCount()];
+            messages = new String[registry.getCommandCount()];
+            viewers = new int[registry.getCommandCount()];
+            total = 0;
+            countsFor = registry;
+        }
+
+    }
+
+    /**
+     * Chooses the winning command and removes all of its votes.
+     */
+    @Override
+    public Candidate pick() {
+
+        if (total == 0) {
+            return null;
+        }
+
+        int winner = proportional ? drawProportional() : findPlurality();
+        Candidate candidate = new Candidate(messages[winner], viewers[winner]);
+
+        total -= counts[winner];
+        counts[winner] = 0;
+        messages[winner] = null;
+
+        return candidate;
+
+    }
+
+    private int findPlurality() {
+
+        ThreadLocalRandom rand = ThreadLocalRandom.current();
+        int winner = -1;
+        int ties = 0;
+
+        for (int i = 0; i < counts.length; i++) {
+
+            if (counts[i] == 0) {
+                continue;
+            }
+
+            if (winner == -1 || counts[i] > counts[winner]) {
+                winner = i;
+                ties = 1;
+            } else if (counts[i] == counts[winner] && rand.nextInt(++ties) == 0) {
+                // Break ties uniformly
+                winner = i;
+            }
+
+        }
+
+        return winner;
+
+    }
+
+    private int drawProportional() {
+
+        long ticket = ThreadLocalRandom.current().nextLong(total);
+        int last = -1;
+
+        for (int i = 0; i < counts.length; i++) {
+
+            if (counts[i] == 0) {
+                continue;
+            }
+
+            ticket -= counts[i];
+            last = i;
+
+            if (ticket < 0) {
+                return i;
+            }
+
+        }
+
+        return last;
+
+    }
+
+    /**
+     * Removes all votes for matching commands. Each command is checked once, using its latest message.
+     */
+    @Override
+    public void removeIf(Predicate<String> filter) {
+
+        for (int i = 0; i < counts.length; i++) {
+
+            if (counts[i] > 0 && filter.test(messages[i])) {
+                total -= counts[i];
+                counts[i] = 0;
+                messages[i] = null;
+            }
+
+        }
+
+    }
+
+    @Override
+    public void clear() {
+
+        Arrays.fill(counts, 0);
+        Arrays.fill(messages, null);
+        total = 0;
+
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return total == 0;
+    }
+
+    /**
+     * @return each command with votes, most votes first, e.g. "creeper (5)"
+     */
+    @Override
+    public List<String> getContents() {
+
+        List<Integer> voted = new ArrayList<>();
+
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] > 0) {
+                voted.add(i);
+            }
+        }
+
+        voted.sort((a, b) -> Integer.compare(counts[b], counts[a]));
+
+        List<String> contents = new ArrayList<>(voted.size());
+
+        for (int id : voted) {
+            contents.add(countsFor.getCommandName(id) + " (" + counts[id] + ")");
+        }
+
+        return contents;
+
+    }
+
+}
@@ -0,0 +1,115 @@
+package io.github.icrazyblaze.twitchmod.chat;
+
+/**
+ * Splits a chat command into its name and arguments in a single pass, without regular expressions or intermediate arrays.
+ * The result only holds offsets into the original message, so nothing is copied until a part is actually needed.
+ * <pre>
+ * {@code
+ *     "!messagebox   hello there "
+ *      ^name^      ^args     ^
+ * }
+ * </pre>
+ *
+ * @see ChatPicker
+ * @since 4.1.0
+ */
+public class CommandTokenizer {
+
+    /**
+     * Finds the command name and arguments in a chat message that starts with the command prefix.
+     *
+     * @param message the chat message, e.g. "!messagebox hello"
+     * @param prefix  the command prefix, e.g. "!"
+     * @return the command's offsets, or null if the message is not a command
+     */
+    public static Token tokenize(CharSequence message, String prefix) {
+
+        int length = message.length();
+        int prefixLength = prefix.length();
+
+        if (length <= prefixLength) {
+            return null;
+        }
+
+        for (int i = 0; i < prefixLength; i++) {
+            if (message.charAt(i) != prefix.charAt(i)) {
+                return null;
+            }
+        }
+
+        return tokenize(message, prefixLength);
+
+    }
+
+    /**
+     * Finds the command name and arguments in a message that has already had its prefix removed.
+     * Leading and trailing whitespace is ignored.
+     *
+     * @param message the chat command, e.g. "messagebox hello"
+     * @param from    where the command starts in the message
+     * @return the command's offsets, or null if there is no command name
+     */
+    public static Token tokenize(CharSequence message, int from) {
+
+        int length = message.length();
+        int nameStart = from;
+
+        while (nameStart < length && Character.isWhitespace(message.charAt(nameStart))) {
+            nameStart++;
+        }
+
+        if (nameStart == length) {
+            return null;
+        }
+
+        int nameEnd = nameStart;
+        while (nameEnd < length && !Character.isWhitespace(message.charAt(nameEnd))) {
+            nameEnd++;
+        }
+
+        int argsStart = nameEnd;
+        while (argsStart < length && Character.isWhitespace(message.charAt(argsStart))) {
+            argsStart++;
+        }
+
+        int argsEnd = length;
+        while (argsEnd > argsStart && Character.isWhitespace(message.charAt(argsEnd - 1))) {
+            argsEnd--;
+        }
+
+        return new Token(nameStart, nameEnd, argsStart, argsEnd);
+
+    }
+
+    /**
+     * Offsets of the parts of a chat command within the original message. End offsets are exclusive.
+     *
+     * @param nameStart where the command name starts
+     * @param nameEnd   where the command name ends
+     * @param argsStart where the arguments start
+     * @param argsEnd   where the arguments end, without trailing whitespace
+     */
+    public record Token(int nameStart, int nameEnd, int argsStart, int argsEnd) {
+
+        public boolean hasArgs() {
+            return argsEnd > argsStart;
+        }
+
+        public String name(CharSequence message) {
+            return message.subSequence(nameStart, nameEnd).toString();
+        }
+
+        public String args(CharSequence message) {
+            return message.subSequence(argsStart, argsEnd).toString();
+        }
+
+        /**
+         * @return the command name and arguments with surrounding whitespace removed, e.g. "messagebox hello"
+         */
+        public String command(CharSequence message) {
+            return message.subSequence(nameStart, Math.max(nameEnd, argsEnd)).toString();
+        }
+
+    }
+
+}
@@ -0,0 +1,92 @@
+package io.github.icrazyblaze.twitchmod.chat;
+
+import io.github.icrazyblaze.twitchmod.Main;
+import io.github.icrazyblaze.twitchmod.config.ConfigManager;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Works out how much weight a chat command has when {@link PickerMode#WEIGHTED} is used.
+ * The weight of an entry is the sender's weight (from bits and role) multiplied by the command's weight from the config.
+ * Command weights are kept in an array indexed by command ID (see {@link CommandRegistry}), so all aliases of a command share a weight.
+ *
+ * @see WeightedCommandWindow
+ * @since 4.1.0
+ */
+public class CommandWeights {
+
+    private static CommandRegistry weightsFor = null;
+    private static List<? extends String> parsedFrom = null;
+    private static double[] commandWeights = new double[0];
+
+    /**
+     * @param bits       the bits cheered with the message
+     * @param subscriber if the sender is a subscriber
+     * @param moderator  if the sender is a moderator or the broadcaster
+     * @return the sender's weight for this message
+     */
+    public static double getViewerWeight(int bits, boolean subscriber, boolean moderator) {
+
+        double weight = 1.0 + Math.max(0, bits) * ConfigManager.WEIGHT_PER_BIT.get();
+
+        if (moderator) {
+            weight *= ConfigManager.MODERATOR_WEIGHT.get();
+        } else if (subscriber) {
+            weight *= ConfigManager.SUBSCRIBER_WEIGHT.get();
+        }
+
+        return weight;
+
+    }
+
+    /**
+     * @param commandId the command's ID in the current registry
+     * @return the weight set for the command in the config, or 1 if none is set
+     */
+    public static double getCommandWeight(int commandId) {
+
+        CommandRegistry registry = ChatCommands.getRegistry();
+        List<? extends String> configured = ConfigManager.COMMAND_WEIGHTS.get();
+
+        // Only parse the config list again when it changes, or when command IDs change because the registry was rebuilt
+        if (registry != weightsFor || configured != parsedFrom) {
+            commandWeights = parseCommandWeights(registry, configured);
+            weightsFor = registry;
+            parsedFrom = configured;
+        }
+
+        return commandWeights[commandId];
+
+    }
+
+    private static double[] parseCommandWeights(CommandRegistry registry, List<? extends String> entries) {
+
+        double[] weights = new double[registry.getCommandCount()];
+        Arrays.fill(weights, 1.0);
+
+        for (String entry : entries) {
+
+            int split = entry.indexOf('=');
+            String name = entry.substring(0, split).trim();
+            int id = registry.findCommand(name, 0, name.length());
+
+            try {
+
+                if (id < 0) {
+                    throw new IllegalArgumentException(name);
+                }
+
+                weights[id] = Double.parseDouble(entry.substring(split + 1).trim());
+
+            } catch (RuntimeException e) {
+                Main.logger.error("Invalid command weight: " + entry);
+            }
+
+        }
+
+        return weights;
+
+    }
+
+}
@@ -0,0 +1,58 @@
+package io.github.icrazyblaze.twitchmod.chat;
+
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Holds the chat commands received between two picks, and chooses which one runs.
+ * Each {@link PickerMode} has its own implementation.
+ *
+ * @see ChatPicker#pickRandomChat(int)
+ * @since 4.1.0
+ */
+public interface CommandWindow {
+
+    /**
+     * Adds a chat command to the window.
+     *
+     * @param message   the chat command, e.g. "creeper"
+     * @param commandId the command's ID in the current registry, see {@link CommandRegistry}
+     * @param viewer    the sender's ID, see {@link ViewerRegistry}
+     * @param weight    the sender's weight for this message, which is only used by {@link PickerMode#WEIGHTED}
+     */
+    void add(String message, int commandId, int viewer, double weight);
+
+    /**
+     * Chooses a command and removes it from the window, so that a failed command is not chosen again.
+     *
+     * @return the chosen command, or null if the window is empty
+     */
+    Candidate pick();
+
+    /**
+     * Removes every command that matches the filter, in a single pass over the window.
+     * Used to drop commands that can't run before picking, so that a pick never has to be retried.
+     *
+     * @param filter returns true for chat commands that should be removed
+     */
+    void removeIf(Predicate<String> filter);
+
+    void clear();
+
+    boolean isEmpty();
+
+    /**
+     * @return a readable summary of the window for /ttv queue
+     */
+    List<String> getContents();
+
+    /**
+     * A command chosen from the window.
+     *
+     * @param message the chat command
+     * @param viewer  the sender's ID, see {@link ViewerRegistry}
+     */
+    record Candidate(String message, int viewer) {
+    }
+
+}
@@ -2,30 +2,28 @@ package io.github.icrazyblaze.twitchmod.chat;
 
 import io.github.icrazyblaze.twitchmod.CommandHandlers;
 import io.github.icrazyblaze.twitchmod.config.ConfigManager;
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
 import net.minecraft.network.chat.TranslatableComponent;
-
-import java.util.ArrayList;
+import net.minecraft.server.level.ServerPlayer;
 
 public class FrenzyVote {
 
-    public static ArrayList<String> votedList = new ArrayList<>();
-    public static int votes = 0;
-    public static int votesNeeded;
+    public static void vote(int pipeline, int viewer, ServerPlayer player) {
 
-    public static void vote(String username) {
+        int votesNeeded = ConfigManager.VOTES_NEEDED.get();
 
-        votesNeeded = ConfigManager.VOTES_NEEDED.get();
+        // Each pipeline has its own votes, kept as viewer IDs from ViewerRegistry so checking for a repeat vote is a primitive hash lookup
+        IntOpenHashSet votedViewers = CommandPipelines.get(pipeline).frenzyVotes;
 
-        if (!votedList.contains(username)) {
+        if (votedViewers.add(viewer)) {
 
-            votedList.add(username);
-            votes = votedList.toArray().length;
+            int votes = votedViewers.size();
 
-            CommandHandlers.broadcastMessage(new TranslatableComponent("gui.twitchmod.user_voted_frenzy", username, votes, votesNeeded));
+            CommandHandlers.broadcastMessage(new TranslatableComponent("gui.twitchmod.user_voted_frenzy", ViewerRegistry.getName(viewer), votes, votesNeeded));
 
             if (votes == votesNeeded) {
-                CommandHandlers.frenzyTimer(10);
-                votedList.clear();
+                CommandHandlers.frenzyTimer(pipeline, player, 10);
+                votedViewers.clear();
             }
 
 
@@ -0,0 +1,48 @@
+package io.github.icrazyblaze.twitchmod.chat;
+
+import java.util.function.IntFunction;
+
+/**
+ * The ways a command can be chosen from chat.
+ *
+ * @see ChatPicker#pickRandomChat(int)
+ * @since 4.1.0
+ */
+public enum PickerMode {
+
+    /**
+     * Every chat command has the same chance of being picked.
+     */
+    RANDOM(CommandReservoir::new),
+    /**
+     * The command with the most votes is picked.
+     */
+    PLURALITY(capacity -> new CommandTally(false)),
+    /**
+     * Commands are picked with a chance proportional to their votes.
+     */
+    PROPORTIONAL(capacity -> new CommandTally(true)),
+    /**
+     * Commands are picked with a chance based on the sender's bits and role, and the command's weight in the config.
+     */
+    WEIGHTED(WeightedCommandWindow::new),
+    /**
+     * A sender is picked first, then one of their commands, so every viewer has the same chance however many commands they send.
+     */
+    FAIR(SenderFairCommandWindow::new);
+
+    private final IntFunction<CommandWindow> factory;
+
+    PickerMode(IntFunction<CommandWindow> factory) {
+        this.factory = factory;
+    }
+
+    /**
+     * @param capacity the configured window size, for modes that store messages
+     * @return a new, empty window for this mode
+     */
+    public CommandWindow createWindow(int capacity) {
+        return factory.apply(capacity);
+    }
+
+}
@@ -0,0 +1,217 @@
+package io.github.icrazyblaze.twitchmod.chat;
+
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Predicate;
+
+/**
+ * Picks a sender first, then one of that sender's commands, so every viewer has the same chance however much they chat.
+ * <p>
+ * Senders are stored in dense slots, each with a small reservoir of their own commands.
+ * Adding, picking and removing are all O(1): a slot is chosen uniformly, then a command within it,
+ * and empty slots are filled by moving the last slot into their place.
+ * If there are more senders than slots, senders replace random slots (reservoir sampling over senders), so memory stays fixed.
+ *
+ * @see PickerMode#FAIR
+ * @since 4.1.0
+ */
+public class SenderFairCommandWindow implements CommandWindow {
+
+    // How many commands are kept for each sender
+    private static final int COMMANDS_PER_SENDER = 8;
+
+    private final Int2IntOpenHashMap slots;
+    private final int[] senders;
+    private final String[][] messages;
+    private final int[] counts;
+    private final long[] seen;
+    private int senderCount = 0;
+    private long sendersSeen = 0;
+
+    public SenderFairCommandWindow(int capacity) {
+
+        slots = new Int2IntOpenHashMap(capacity);
+        slots.defaultReturnValue(-1);
+        senders = new int[capacity];
+        messages = new String[capacity][];
+        counts = new int[capacity];
+        seen = new long[capacity];
+
+    }
+
+    @Override
+    public void add(String message, int commandId, int viewer, double weight) {
+
+        int slot = slots.get(viewer);
+
+        if (slot < 0) {
+
+            sendersSeen++;
+
+            if (senderCount < senders.length) {
+
+                slot = senderCount++;
+
+            } else {
+
+                // Every sender has the same chance of having a slot
+                long replace = ThreadLocalRandom.current().nextLong(sendersSeen);
+
+                if (replace >= senders.length) {
+                    return;
+                }
+
+                slot = (int) replace;
+                slots.remove(senders[slot]);
+                Arrays.fill(messages[slot], 0, counts[slot], null);
+
+            }
+
+            if (messages[slot] == null) {
+                messages[slot] = new String[COMMANDS_PER_SENDER];
+            }
+
+            senders[slot] = viewer;
+            counts[slot] = 0;
+            seen[slot] = 0;
+            slots.put(viewer, slot);
+
+        }
+
+        // Reservoir sample of the sender's own commands
+        String[] own = messages[slot];
+        seen[slot]++;
+
+        if (counts[slot] < own.length) {
+            own[counts[slot]++] = message;
+        } else {
+
+            long replace = ThreadLocalRandom.current().nextLong(seen[slot]);
+
+            if (replace < own.length) {
+                own[(int) replace] = message;
+            }
+
+        }
+
+    }
+
+    @Override
+    public Candidate pick() {
+
+        if (senderCount == 0) {
+            return null;
+        }
+
+        ThreadLocalRandom rand = ThreadLocalRandom.current();
+        int slot = rand.nextInt(senderCount);
+        int index = rand.nextInt(counts[slot]);
+
+        Candidate candidate = new Candidate(messages[slot][index], senders[slot]);
+
+        removeCommand(slot, index);
+
+        return candidate;
+
+    }
+
+    @Override
+    public void removeIf(Predicate<String> filter) {
+
+        // Go backwards, as removing moves the last entry (which has already been checked) into the removed one's place
+        for (int slot = senderCount - 1; slot >= 0; slot--) {
+            for (int index = counts[slot] - 1; index >= 0; index--) {
+
+                if (filter.test(messages[slot][index])) {
+
+                    boolean senderEmptied = counts[slot] == 1;
+                    removeCommand(slot, index);
+
+                    if (senderEmptied) {
+                        break;
+                    }
+
+                }
+
+            }
+        }
+
+    }
+
+    /**
+     * Removes a command by moving the sender's last command into its place, and removes the sender if they have no commands left.
+     */
+    private void removeCommand(int slot, int index) {
+
+        String[] own = messages[slot];
+        int last = --counts[slot];
+        own[index] = own[last];
+        own[last] = null;
+
+        if (last > 0) {
+            return;
+        }
+
+        slots.remove(senders[slot]);
+        int lastSlot = --senderCount;
+
+        if (slot != lastSlot) {
+
+            // Swap the arrays so that the empty one can be reused
+            senders[slot] = senders[lastSlot];
+            messages[slot] = messages[lastSlot];
+            messages[lastSlot] = own;
+            counts[slot] = counts[lastSlot];
+            seen[slot] = seen[lastSlot];
+            slots.put(senders[slot], slot);
+
+        }
+
+        counts[lastSlot] = 0;
+        seen[lastSlot] = 0;
+
+    }
+
+    @Override
+    public void clear() {
+
+        for (int slot = 0; slot < senderCount; slot++) {
+            Arrays.fill(messages[slot], 0, counts[slot], null);
+            counts[slot] = 0;
+            seen[slot] = 0;
+        }
+
+        slots.clear();
+        senderCount = 0;
+        sendersSeen = 0;
+
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return senderCount == 0;
+    }
+
+    /**
+     * @return each sender's commands, e.g. "creeper (Viewer)"
+     */
+    @Override
+    public List<String> getContents() {
+
+        List<String> contents = new ArrayList<>();
+
+        for (int slot = 0; slot < senderCount; slot++) {
+            for (int index = 0; index < counts[slot]; index++) {
+                contents.add(messages[slot][index] + " (" + ViewerRegistry.getName(senders[slot]) + ")");
+            }
+        }
+
+        return contents;
+
+    }
+
+}
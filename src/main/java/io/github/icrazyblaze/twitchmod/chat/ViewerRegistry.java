@@ -0,0 +1,105 @@
+package io.github.icrazyblaze.twitchmod.chat;
+
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+
+import java.util.Arrays;
+
+/**
+ * Gives every viewer a small integer ID, so that votes, rate limits and statistics can be kept in primitive arrays and maps
+ * instead of hashing their names over and over. A viewer is identified by their platform and the platform's user ID,
+ * so a viewer who changes their name keeps their ID, and viewers with the same name on Twitch and Discord are kept apart.
+ * The display name is stored once per viewer and updated when it changes.
+ * <p>
+ * IDs are handed out in order from 0 and never reused, so an ID stays valid for as long as the game is running.
+ * Viewers are registered on the bot threads once a message of theirs has passed the duplicate and rate filters, so chatters whose
+ * messages are all dropped never get an ID. They are looked up from any thread without locking: an ID is only ever passed to
+ * another thread (e.g. through the ingest queue) after its viewer has been stored.
+ *
+ * @since 4.1.0
+ */
+public class ViewerRegistry {
+
+    private static final Object2IntOpenHashMap<ViewerKey> ids = new Object2IntOpenHashMap<>();
+    private static volatile Viewer[] viewers = new Viewer[256];
+    private static volatile int count = 0;
+
+    static {
+        ids.defaultReturnValue(-1);
+    }
+
+    /**
+     * Finds a viewer's ID, giving them a new one if they haven't been seen before.
+     *
+     * @param platform where the viewer is chatting
+     * @param userId   the viewer's user ID on that platform (their name for players in-game)
+     * @param name     the viewer's display name
+     * @return the viewer's ID
+     */
+    public static synchronized int register(ChatPlatform platform, String userId, String name) {
+
+        ViewerKey key = new ViewerKey(platform, userId);
+        int id = ids.getInt(key);
+
+        if (id < 0) {
+
+            id = count;
+
+            if (id == viewers.length) {
+                viewers = Arrays.copyOf(viewers, id * 2);
+            }
+
+            viewers[id] = new Viewer(platform, name);
+            ids.put(key, id);
+            count = id + 1;
+
+        } else if (!viewers[id].name().equals(name)) {
+
+            // Display names can change, so the latest one is shown
+            viewers[id] = new Viewer(platform, name);
+
+        }
+
+        return id;
+
+    }
+
+    /**
+     * Registers a player or test user inside the game, whose name is also their ID.
+     *
+     * @param name the player's name
+     * @return the player's viewer ID
+     */
+    public static int registerPlayer(String name) {
+        return register(ChatPlatform.MINECRAFT, name, name);
+    }
+
+    /**
+     * @param viewerId an ID from {@link #register}
+     * @return the viewer's latest display name
+     */
+    public static String getName(int viewerId) {
+        return viewers[viewerId].name();
+    }
+
+    /**
+     * @param viewerId an ID from {@link #register}
+     * @return where the viewer is chatting
+     */
+    public static ChatPlatform getPlatform(int viewerId) {
+        return viewers[viewerId].platform();
+    }
+
+    /**
+     * @return how many viewers have been seen, which is also one more than the highest ID
+     */
+    public static int size() {
+        return count;
+    }
+
+    private record ViewerKey(ChatPlatform platform, String userId) {
+    }
+
+    private record Viewer(ChatPlatform platform, String name) {
+    }
+
+}
@@ -0,0 +1,248 @@
+package io.github.icrazyblaze.twitchmod.chat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Predicate;
+
+/**
+ * Picks commands with a chance proportional to their weight, which comes from the sender's bits and role and the command's own weight.
+ * <p>
+ * Every entry gets the key u^(1/weight) for a random u (Efraimidis and Spirakis' A-Res), and the entry with the largest key is picked,
+ * which happens with a chance proportional to its weight. The weight is only used once, through the key: if the pick fails, the next largest key
+ * is a weighted pick from the entries that are left.
+ * <p>
+ * Once the window is full, only the entries with the largest keys are kept. The entry with the largest key in all of chat is always one of them,
+ * so a full window picks exactly as if it had kept every message. The keys are kept in a min-heap, so the entry to replace is always found straight away.
+ *
+ * @see PickerMode#WEIGHTED
+ * @see CommandWeights
+ * @since 4.1.0
+ */
+public class WeightedCommandWindow implements CommandWindow {
+
+    private final String[] messages;
+    private final int[] viewers;
+    private final double[] weights;
+    // log(u) / weight, which is in the same order as u^(1/weight) without underflowing for small weights
+    private final double[] keys;
+    // The slots still holding an entry, in a min-heap by key, and where each slot is in the heap
+    private final int[] heap;
+    private final int[] heapIndex;
+    // Slots in use, including the empty slots left by picks and removals, and how many of them hold an entry (the heap's size)
+    private int size = 0;
+    private int live = 0;
+
+    public WeightedCommandWindow(int capacity) {
+        messages = new String[capacity];
+        viewers = new int[capacity];
+        weights = new double[capacity];
+        keys = new double[capacity];
+        heap = new int[capacity];
+        heapIndex = new int[capacity];
+    }
+
+    @Override
+    public void add(String message, int commandId, int viewer, double weight) {
+
+        weight = Math.max(0, weight * CommandWeights.getCommandWeight(commandId));
+        double key = Math.log(ThreadLocalRandom.current().nextDouble()) / weight;
+
+        if (live < size) {
+            compact();
+        }
+
+        if (size < messages.length) {
+
+            set(size, message, viewer, weight, key);
+            move(size, live);
+            live++;
+            siftUp(live - 1);
+            size++;
+
+        } else if (key > keys[heap[0]]) {
+
+            // Replace the entry with the smallest key
+            int slot = heap[0];
+            set(slot, message, viewer, weight, key);
+            siftDown(0);
+
+        }
+
+    }
+
+    @Override
+    public Candidate pick() {
+
+        if (live == 0) {
+            return null;
+        }
+
+        // The heap only finds the smallest key, and picks are rare enough that one pass over the window is cheap
+        int index = -1;
+
+        for (int i = 0; i < size; i++) {
+            if (messages[i] != null && (index < 0 || keys[i] > keys[index])) {
+                index = i;
+            }
+        }
+
+        Candidate candidate = new Candidate(messages[index], viewers[index]);
+
+        removeFromHeap(index);
+        messages[index] = null;
+
+        return candidate;
+
+    }
+
+    @Override
+    public void removeIf(Predicate<String> filter) {
+
+        for (int i = 0; i < size; i++) {
+
+            if (messages[i] != null && filter.test(messages[i])) {
+                removeFromHeap(i);
+                messages[i] = null;
+            }
+
+        }
+
+    }
+
+    @Override
+    public void clear() {
+
+        Arrays.fill(messages, 0, size, null);
+        size = 0;
+        live = 0;
+
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return live == 0;
+    }
+
+    /**
+     * @return each command with its weight, e.g. "creeper (x2.5)"
+     */
+    @Override
+    public List<String> getContents() {
+
+        List<String> contents = new ArrayList<>(live);
+
+        for (int i = 0; i < size; i++) {
+            if (messages[i] != null) {
+                contents.add(String.format(Locale.ROOT, "%s (x%.1f)", messages[i], weights[i]));
+            }
+        }
+
+        return contents;
+
+    }
+
+    private void set(int slot, String message, int viewer, double weight, double key) {
+        messages[slot] = message;
+        viewers[slot] = viewer;
+        weights[slot] = weight;
+        keys[slot] = key;
+    }
+
+    /**
+     * Moves the remaining entries over the empty slots left by picks and removals, and builds the heap again.
+     */
+    private void compact() {
+
+        int kept = 0;
+
+        for (int i = 0; i < size; i++) {
+            if (messages[i] != null) {
+                set(kept, messages[i], viewers[i], weights[i], keys[i]);
+                kept++;
+            }
+        }
+
+        Arrays.fill(messages, kept, size, null);
+        size = kept;
+        live = kept;
+
+        for (int i = 0; i < size; i++) {
+            heap[i] = i;
+            heapIndex[i] = i;
+        }
+        for (int i = size / 2 - 1; i >= 0; i--) {
+            siftDown(i);
+        }
+
+    }
+
+    private void removeFromHeap(int slot) {
+
+        int position = heapIndex[slot];
+        int last = heap[--live];
+
+        if (position < live) {
+            move(last, position);
+            siftDown(position);
+            siftUp(heapIndex[last]);
+        }
+
+    }
+
+    private void siftUp(int position) {
+
+        int slot = heap[position];
+
+        while (position > 0) {
+
+            int parent = (position - 1) / 2;
+
+            if (keys[heap[parent]] <= keys[slot]) {
+                break;
+            }
+
+            move(heap[parent], position);
+            position = parent;
+
+        }
+
+        move(slot, position);
+
+    }
+
+    private void siftDown(int position) {
+
+        int slot = heap[position];
+
+        while (true) {
+
+            int child = position * 2 + 1;
+
+            if (child >= live) {
+                break;
+            }
+            if (child + 1 < live && keys[heap[child + 1]] < keys[heap[child]]) {
+                child++;
+            }
+            if (keys[slot] <= keys[heap[child]]) {
+                break;
+            }
+
+            move(heap[child], position);
+            position = child;
+
+        }
+
+        move(slot, position);
+
+    }
+
+    private void move(int slot, int position) {
+        heap[position] = slot;
+        heapIndex[slot] = position;
+    }
+
+}
@@ -3,7 +3,8 @@ package io.github.icrazyblaze.twitchmod.command;
 import com.mojang.brigadier.Command;
 import com.mojang.brigadier.builder.ArgumentBuilder;
 import com.mojang.brigadier.context.CommandContext;
-import io.github.icrazyblaze.twitchmod.chat.ChatPicker;
+import io.github.icrazyblaze.twitchmod.chat.CommandPipeline;
+import io.github.icrazyblaze.twitchmod.chat.CommandPipelines;
 import net.minecraft.commands.CommandSourceStack;
 import net.minecraft.commands.Commands;
 import net.minecraft.network.chat.TranslatableComponent;
@@ -21,7 +22,18 @@ public class QueueCommand implements Command<CommandSourceStack> {
     @Override
     public int run(CommandContext<CommandSourceStack> context) {
 
-        context.getSource().sendSuccess(new TranslatableComponent("gui.twitchmod.chat.possible_commands", ChatPicker.chatBuffer.toString()), false);
+        for (CommandPipeline pipeline : CommandPipelines.getAll()) {
+
+            String contents = pipeline.getWindow().getContents().toString();
+
+            if (pipeline.getKeyword() == null) {
+                context.getSource().sendSuccess(new TranslatableComponent("gui.twitchmod.chat.possible_commands", contents), false);
+            } else {
+                context.getSource().sendSuccess(new TranslatableComponent("gui.twitchmod.chat.possible_commands_for", pipeline.getKeyword(), contents), false);
+            }
+
+        }
+
         return SINGLE_SUCCESS;
     }
 }
\ No newline at end of file
@@ -0,0 +1,54 @@
+package io.github.icrazyblaze.twitchmod.command;
+
+import com.mojang.brigadier.Command;
+import com.mojang.brigadier.builder.ArgumentBuilder;
+import com.mojang.brigadier.context.CommandContext;
+import io.github.icrazyblaze.twitchmod.chat.ChatStatistics;
+import io.github.icrazyblaze.twitchmod.chat.ViewerRegistry;
+import io.github.icrazyblaze.twitchmod.util.SpaceSaving;
+import net.minecraft.ChatFormatting;
+import net.minecraft.commands.CommandSourceStack;
+import net.minecraft.commands.Commands;
+import net.minecraft.network.chat.TranslatableComponent;
+
+public class StatsCommand implements Command<CommandSourceStack> {
+
+    private static final StatsCommand CMD = new StatsCommand();
+    private static final int TOP_COUNT = 5;
+
+    public static ArgumentBuilder<CommandSourceStack, ?> register() {
+        return Commands.literal("stats")
+                .requires(cs -> cs.hasPermission(0))
+                .executes(CMD)
+                .then(Commands.literal("reset").executes(CMD::resetStats));
+    }
+
+    @Override
+    public int run(CommandContext<CommandSourceStack> context) {
+
+        context.getSource().sendSuccess(new TranslatableComponent("gui.twitchmod.stats.total", ChatStatistics.getTotalRequests()).withStyle(ChatFormatting.GOLD), false);
+
+        context.getSource().sendSuccess(new TranslatableComponent("gui.twitchmod.stats.top_commands").withStyle(ChatFormatting.DARK_PURPLE), false);
+        for (ChatStatistics.CommandCount command : ChatStatistics.getTopCommands(TOP_COUNT)) {
+            context.getSource().sendSuccess(new TranslatableComponent("gui.twitchmod.stats.command", command.name(), command.requested(), command.executed()), false);
+        }
+
+        context.getSource().sendSuccess(new TranslatableComponent("gui.twitchmod.stats.top_senders").withStyle(ChatFormatting.DARK_PURPLE), false);
+        for (SpaceSaving.Entry sender : ChatStatistics.getTopSenders(TOP_COUNT)) {
+            context.getSource().sendSuccess(new TranslatableComponent("gui.twitchmod.stats.sender", ViewerRegistry.getName(sender.key()), sender.count()), false);
+        }
+
+        return SINGLE_SUCCESS;
+
+    }
+
+    private int resetStats(CommandContext<CommandSourceStack> context) {
+
+        ChatStatistics.reset();
+        context.getSource().sendSuccess(new TranslatableComponent("gui.twitchmod.stats.reset"), false);
+
+        return SINGLE_SUCCESS;
+
+    }
+
+}
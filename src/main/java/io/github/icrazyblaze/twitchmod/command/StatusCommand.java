@@ -6,6 +6,8 @@ import com.mojang.brigadier.context.CommandContext;
 import com.mojang.brigadier.exceptions.CommandSyntaxException;
 import io.github.icrazyblaze.twitchmod.bots.discord.DiscordConnectionHelper;
 import io.github.icrazyblaze.twitchmod.bots.irc.TwitchConnectionHelper;
+import io.github.icrazyblaze.twitchmod.chat.ChatIngestQueue;
+import io.github.icrazyblaze.twitchmod.chat.ChatPickerHelper;
 import io.github.icrazyblaze.twitchmod.config.BotConfig;
 import io.github.icrazyblaze.twitchmod.config.ConfigManager;
 import io.github.icrazyblaze.twitchmod.util.PlayerHelper;
@@ -50,6 +52,9 @@ public class StatusCommand implements Command<CommandSourceStack> {
         context.getSource().sendSuccess(new TranslatableComponent("gui.twitchmod.command_seconds", TimerSystem.chatSecondsTrigger.get()).withStyle(ChatFormatting.DARK_PURPLE), false);
         context.getSource().sendSuccess(new TranslatableComponent("gui.twitchmod.command_prefix", BotConfig.getCommandPrefix()).withStyle(ChatFormatting.DARK_PURPLE), false);
 
+        ChatIngestQueue<?> ingestQueue = ChatPickerHelper.getIngestQueue();
+        context.getSource().sendSuccess(new TranslatableComponent("gui.twitchmod.ingest_queue", ingestQueue.size(), ingestQueue.getCapacity(), ingestQueue.getDroppedCount()).withStyle(ChatFormatting.DARK_PURPLE), false);
+
         if (ConfigManager.REQUIRE_BITS.get()) {
             context.getSource().sendSuccess(new TranslatableComponent("gui.twitchmod.chat.bits_required", ConfigManager.MINIMUM_BITS.get()).withStyle(ChatFormatting.DARK_PURPLE), false);
         }
@@ -7,6 +7,7 @@ import com.mojang.brigadier.builder.ArgumentBuilder;
 import com.mojang.brigadier.context.CommandContext;
 import com.mojang.brigadier.exceptions.CommandSyntaxException;
 import io.github.icrazyblaze.twitchmod.chat.ChatPicker;
+import io.github.icrazyblaze.twitchmod.chat.ViewerRegistry;
 import io.github.icrazyblaze.twitchmod.config.BotConfig;
 import net.minecraft.commands.CommandSourceStack;
 import net.minecraft.commands.Commands;
@@ -34,13 +35,13 @@ public class TestCommand implements Command<CommandSourceStack> {
         // Get message and simulate command
         String message = StringArgumentType.getString(context, "command");
 
-        ChatPicker.forceCommands = BoolArgumentType.getBool(context, "runAndIgnoreBlacklist");
+        boolean force = BoolArgumentType.getBool(context, "runAndIgnoreBlacklist");
 
         // Remove prefix
         if (message.startsWith(BotConfig.getCommandPrefix())) {
             message = message.substring(BotConfig.getCommandPrefix().length());
         }
-        ChatPicker.checkChat(message, "TestUser" + rand.nextInt(0, 100));
+        ChatPicker.checkChat(message, ViewerRegistry.registerPlayer("TestUser" + rand.nextInt(0, 100)), 1.0, force);
 
         return SINGLE_SUCCESS;
 
@@ -0,0 +1,55 @@
+package io.github.icrazyblaze.twitchmod.command;
+
+import com.mojang.brigadier.Command;
+import com.mojang.brigadier.arguments.IntegerArgumentType;
+import com.mojang.brigadier.builder.ArgumentBuilder;
+import com.mojang.brigadier.context.CommandContext;
+import io.github.icrazyblaze.twitchmod.util.world.BlockEditJournal;
+import net.minecraft.commands.CommandSourceStack;
+import net.minecraft.commands.Commands;
+import net.minecraft.network.chat.TranslatableComponent;
+
+/**
+ * Undoes the blocks changed by chat commands: the last command with "/ttv undo", the last few commands with "/ttv undo 3",
+ * or everything from the last minute with "/ttv undo seconds 60".
+ *
+ * @see BlockEditJournal
+ * @since 4.1.0
+ */
+public class UndoCommand implements Command<CommandSourceStack> {
+
+    private static final UndoCommand CMD = new UndoCommand();
+
+    public static ArgumentBuilder<CommandSourceStack, ?> register() {
+        return Commands.literal("undo")
+                .requires(cs -> cs.hasPermission(0))
+                .executes(CMD::undoLast)
+                .then(Commands.argument("count", IntegerArgumentType.integer(1)).executes(CMD))
+                .then(Commands.literal("seconds").then(Commands.argument("seconds", IntegerArgumentType.integer(1)).executes(CMD::undoSeconds)));
+    }
+
+    @Override
+    public int run(CommandContext<CommandSourceStack> context) {
+        return showResult(context, BlockEditJournal.undoChanges(IntegerArgumentType.getInteger(context, "count")));
+    }
+
+    private int undoLast(CommandContext<CommandSourceStack> context) {
+        return showResult(context, BlockEditJournal.undoChanges(1));
+    }
+
+    private int undoSeconds(CommandContext<CommandSourceStack> context) {
+        return showResult(context, BlockEditJournal.undoSeconds(IntegerArgumentType.getInteger(context, "seconds")));
+    }
+
+    private int showResult(CommandContext<CommandSourceStack> context, int changed) {
+
+        if (changed == 0) {
+            context.getSource().sendSuccess(new TranslatableComponent("gui.twitchmod.undo_nothing"), false);
+        } else {
+            context.getSource().sendSuccess(new TranslatableComponent("gui.twitchmod.undo_done", changed), false);
+        }
+
+        return SINGLE_SUCCESS;
+
+    }
+}
@@ -3,14 +3,13 @@ package io.github.icrazyblaze.twitchmod.command.twitch;
 import com.mojang.brigadier.Command;
 import com.mojang.brigadier.builder.ArgumentBuilder;
 import com.mojang.brigadier.context.CommandContext;
+import com.mojang.brigadier.exceptions.CommandSyntaxException;
 import io.github.icrazyblaze.twitchmod.network.PacketHandler;
 import io.github.icrazyblaze.twitchmod.network.packet.LinkScreenPacket;
 import net.minecraft.commands.CommandSourceStack;
 import net.minecraft.commands.Commands;
 import net.minecraftforge.network.NetworkDirection;
 
-import static io.github.icrazyblaze.twitchmod.util.PlayerHelper.player;
-
 public class GetKeyCommand implements Command<CommandSourceStack> {
 
     private static final GetKeyCommand CMD = new GetKeyCommand();
@@ -22,9 +21,9 @@ public class GetKeyCommand implements Command<CommandSourceStack> {
     }
 
     @Override
-    public int run(CommandContext<CommandSourceStack> context) {
+    public int run(CommandContext<CommandSourceStack> context) throws CommandSyntaxException {
 
-        PacketHandler.INSTANCE.sendTo(new LinkScreenPacket("https://twitchapps.com/tmi"), player().connection.getConnection(), NetworkDirection.PLAY_TO_CLIENT);
+        PacketHandler.INSTANCE.sendTo(new LinkScreenPacket("https://twitchapps.com/tmi"), context.getSource().getPlayerOrException().connection.getConnection(), NetworkDirection.PLAY_TO_CLIENT);
 
         return SINGLE_SUCCESS;
     }
@@ -2,6 +2,8 @@ package io.github.icrazyblaze.twitchmod.config;
 
 
 import com.google.common.collect.Lists;
+import io.github.icrazyblaze.twitchmod.chat.ChatIngestQueue;
+import io.github.icrazyblaze.twitchmod.chat.PickerMode;
 import net.minecraftforge.common.ForgeConfigSpec;
 
 import java.util.List;
@@ -18,6 +20,7 @@ public class ConfigManager {
     public static ForgeConfigSpec.ConfigValue<Integer> CHOOSE_COMMAND_DELAY;
     public static ForgeConfigSpec.ConfigValue<Integer> CHOOSE_MESSAGE_DELAY;
     public static ForgeConfigSpec.ConfigValue<List<? extends String>> PLAYERS_AFFECTED;
+    public static ForgeConfigSpec.ConfigValue<List<? extends String>> PLAYER_KEYWORDS;
     public static ForgeConfigSpec.ConfigValue<String> COMMAND_PREFIX;
     public static ForgeConfigSpec.ConfigValue<Boolean> ENABLE_COOLDOWN;
     public static ForgeConfigSpec.ConfigValue<Boolean> ENABLE_FRENZY;
@@ -26,6 +29,26 @@ public class ConfigManager {
     public static ForgeConfigSpec.ConfigValue<Integer> VOTES_NEEDED;
     public static ForgeConfigSpec.ConfigValue<Integer> BOOK_LENGTH;
     public static ForgeConfigSpec.ConfigValue<Boolean> SHOW_CHAT_MESSAGES;
+    public static ForgeConfigSpec.EnumValue<PickerMode> PICKER_MODE;
+    public static ForgeConfigSpec.ConfigValue<Integer> FUZZY_MATCH_DISTANCE;
+    public static ForgeConfigSpec.ConfigValue<Integer> COMMAND_COOLDOWN;
+    public static ForgeConfigSpec.ConfigValue<List<? extends String>> COMMAND_COOLDOWNS;
+    public static ForgeConfigSpec.ConfigValue<Integer> COMMANDS_PER_MINUTE;
+    public static ForgeConfigSpec.ConfigValue<Integer> COMMAND_BURST;
+    public static ForgeConfigSpec.ConfigValue<Double> WEIGHT_PER_BIT;
+    public static ForgeConfigSpec.ConfigValue<Double> SUBSCRIBER_WEIGHT;
+    public static ForgeConfigSpec.ConfigValue<Double> MODERATOR_WEIGHT;
+    public static ForgeConfigSpec.ConfigValue<List<? extends String>> COMMAND_WEIGHTS;
+    public static ForgeConfigSpec.ConfigValue<Integer> INGEST_QUEUE_SIZE;
+    public static ForgeConfigSpec.ConfigValue<Integer> INGEST_DRAIN_PER_TICK;
+    public static ForgeConfigSpec.EnumValue<ChatIngestQueue.OverflowPolicy> INGEST_OVERFLOW_POLICY;
+    public static ForgeConfigSpec.ConfigValue<Integer> COMMAND_WINDOW_SIZE;
+    public static ForgeConfigSpec.ConfigValue<Integer> VIEWER_MESSAGE_LIMIT;
+    public static ForgeConfigSpec.ConfigValue<Integer> VIEWER_MESSAGE_WINDOW;
+    public static ForgeConfigSpec.ConfigValue<Integer> DUPLICATE_MESSAGE_WINDOW;
+    public static ForgeConfigSpec.ConfigValue<Integer> UNDO_MEMORY_SIZE;
+    public static ForgeConfigSpec.ConfigValue<Integer> UNDO_FILE_SEGMENTS;
+    public static ForgeConfigSpec.ConfigValue<Integer> EFFECT_TICK_BUDGET;
 
     static {
 
@@ -48,9 +71,28 @@ public class ConfigManager {
         CHOOSE_MESSAGE_DELAY = builder.comment("How many seconds until a random viewer-written message is shown on screen").defineInRange("choose_message_delay", 240, 10, 480);
 
         PLAYERS_AFFECTED = builder.comment("The players' Minecraft usernames that will be effected").defineList("minecraft_username", Lists.newArrayList("Dev", "Test"), x -> true);
+        PLAYER_KEYWORDS = builder.comment("Keywords that send a command to one player, who has their own commands picked and timers, e.g. !red creeper ['red=Dev', 'blue=Test']").defineList("player_keywords", Lists.<String>newArrayList(), x -> x instanceof String str && str.contains("="));
         COMMAND_PREFIX = builder.comment("The prefix for commands in Twitch or Discord").define("command_prefix", "!");
 
         ENABLE_COOLDOWN = builder.comment("Prevent the same command from being executed twice in a row").define("enable_cooldown", false);
+        PICKER_MODE = builder.comment("How commands are chosen: RANDOM picks a random chat command, PLURALITY picks the command with the most votes, PROPORTIONAL picks with a chance based on votes, WEIGHTED picks with a chance based on bits, roles and command weights, FAIR picks a random viewer and then one of their commands").defineEnum("picker_mode", PickerMode.RANDOM);
+        builder.push("weighted");
+        WEIGHT_PER_BIT = builder.comment("How much extra weight each cheered bit gives a command in WEIGHTED picker mode").defineInRange("weight_per_bit", 0.01, 0.0, 100.0);
+        SUBSCRIBER_WEIGHT = builder.comment("Weight multiplier for commands from subscribers in WEIGHTED picker mode").defineInRange("subscriber_weight", 2.0, 0.0, 100.0);
+        MODERATOR_WEIGHT = builder.comment("Weight multiplier for commands from moderators in WEIGHTED picker mode").defineInRange("moderator_weight", 2.0, 0.0, 100.0);
+        COMMAND_WEIGHTS = builder.comment("Weight multipliers for individual commands in WEIGHTED picker mode ['creeper=2.0', 'like=0.5', 'this=1.5']").defineList("command_weights", Lists.<String>newArrayList(), x -> x instanceof String str && str.contains("="));
+        builder.pop();
+        builder.push("rate_limit");
+        COMMAND_COOLDOWN = builder.comment("How many seconds before the same command can be sent again, for every command. 0 turns this off").defineInRange("command_cooldown", 0, 0, 3600);
+        COMMAND_COOLDOWNS = builder.comment("Cooldowns in seconds for individual commands, which replace command_cooldown ['creeper=60', 'like=30', 'this=0']").defineList("command_cooldowns", Lists.<String>newArrayList(), x -> x instanceof String str && str.contains("="));
+        COMMANDS_PER_MINUTE = builder.comment("The most chat commands that can run each minute, including Frenzy Mode. 0 turns this off").defineInRange("commands_per_minute", 0, 0, 6000);
+        COMMAND_BURST = builder.comment("How many chat commands can run at once before commands_per_minute starts to apply").defineInRange("command_burst", 5, 1, 1000);
+        VIEWER_MESSAGE_LIMIT = builder.comment("How many messages each viewer can send within viewer_message_window before extra messages are ignored, including messages logged to a book. 0 turns this off").defineInRange("viewer_message_limit", 0, 0, 1000);
+        VIEWER_MESSAGE_WINDOW = builder.comment("How many seconds viewer_message_limit applies over").defineInRange("viewer_message_window", 30, 1, 3600);
+        DUPLICATE_MESSAGE_WINDOW = builder.comment("How many seconds a viewer's message is remembered for, so that the same message sent again is ignored (e.g. copy-paste floods during raids). This also ignores a viewer voting for the same command twice. 0 turns this off").defineInRange("duplicate_message_window", 0, 0, 300);
+        builder.pop();
+        FUZZY_MATCH_DISTANCE = builder.comment("How many typos a chat command can have and still be recognised (e.g. !creepr). Short commands allow fewer typos. 0 turns this off").defineInRange("fuzzy_match_distance", 0, 0, 3);
+
         ENABLE_FRENZY = builder.comment("Allow Frenzy Mode").define("enable_frenzy", true);
 
         REQUIRE_BITS = builder.comment("Require a certain amount of bits for any command").define("require_bits", false);
@@ -61,6 +103,16 @@ public class ConfigManager {
 
         builder.pop();
 
+        builder.push("performance");
+        INGEST_QUEUE_SIZE = builder.comment("How many chat messages can wait to be processed by the server (requires a restart)").defineInRange("ingest_queue_size", 1024, 16, 65536);
+        INGEST_DRAIN_PER_TICK = builder.comment("The most chat messages processed by the server every tick").defineInRange("ingest_drain_per_tick", 64, 1, 4096);
+        COMMAND_WINDOW_SIZE = builder.comment("How many chat commands are kept to pick from between picks. Extra commands replace random ones so every command has the same chance").defineInRange("command_window_size", 256, 1, 65536);
+        INGEST_OVERFLOW_POLICY = builder.comment("What to do when too many chat messages are waiting: DROP_OLDEST, DROP_NEWEST or SAMPLE").defineEnum("ingest_overflow_policy", ChatIngestQueue.OverflowPolicy.DROP_OLDEST);
+        EFFECT_TICK_BUDGET = builder.comment("How many microseconds each server tick can spend on large chat effects (e.g. domes) before they carry on next tick").defineInRange("effect_tick_budget", 2000, 100, 50000);
+        UNDO_MEMORY_SIZE = builder.comment("How many block changes made by chat are kept in memory for /ttv undo. Older changes are moved to files in the world folder (requires reloading the world)").defineInRange("undo_memory_size", 4096, 64, 1048576);
+        UNDO_FILE_SEGMENTS = builder.comment("How many files of older block changes are kept for /ttv undo, each holding half of undo_memory_size. 0 forgets older changes instead").defineInRange("undo_file_segments", 16, 0, 1024);
+        builder.pop();
+
     }
 
 }
@@ -1,7 +1,8 @@
 package io.github.icrazyblaze.twitchmod.gui;
 
 import io.github.icrazyblaze.twitchmod.Main;
-import io.github.icrazyblaze.twitchmod.util.timers.TimerSystem;
+import io.github.icrazyblaze.twitchmod.chat.CommandPipelines;
+import io.github.icrazyblaze.twitchmod.util.ModState;
 import net.minecraft.client.Minecraft;
 import net.minecraft.network.chat.MutableComponent;
 import net.minecraft.network.chat.TranslatableComponent;
@@ -21,9 +22,17 @@ public class DeathTimerOverlay {
             return;
         }
 
-        if (TimerSystem.deathTimerEnabled) {
+        if (Minecraft.getInstance().player == null) {
+            return;
+        }
+
+        // Show the timers of the pipeline this player is in
+        int pipeline = CommandPipelines.forPlayer(Minecraft.getInstance().player.getGameProfile().getName());
+        ModState.Snapshot state = ModState.get();
+
+        if (state.deathTimerEnabled(pipeline)) {
 
-            MutableComponent text = new TranslatableComponent("gui.twitchmod.timer", TimerSystem.deathTimerSeconds);
+            MutableComponent text = new TranslatableComponent("gui.twitchmod.timer", state.deathTimerSeconds(pipeline));
             Minecraft.getInstance().font.drawShadow(event.getMatrixStack(), text, 4, 4, 11141120);
 
         }
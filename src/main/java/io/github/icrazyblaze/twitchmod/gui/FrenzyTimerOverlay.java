@@ -1,8 +1,8 @@
 package io.github.icrazyblaze.twitchmod.gui;
 
 import io.github.icrazyblaze.twitchmod.Main;
-import io.github.icrazyblaze.twitchmod.chat.ChatPicker;
-import io.github.icrazyblaze.twitchmod.util.timers.TimerSystem;
+import io.github.icrazyblaze.twitchmod.chat.CommandPipelines;
+import io.github.icrazyblaze.twitchmod.util.ModState;
 import net.minecraft.ChatFormatting;
 import net.minecraft.client.Minecraft;
 import net.minecraft.network.chat.MutableComponent;
@@ -23,9 +23,17 @@ public class FrenzyTimerOverlay {
             return;
         }
 
-        if (ChatPicker.instantCommands) {
+        if (Minecraft.getInstance().player == null) {
+            return;
+        }
+
+        // Show the timers of the pipeline this player is in
+        int pipeline = CommandPipelines.forPlayer(Minecraft.getInstance().player.getGameProfile().getName());
+        ModState.Snapshot state = ModState.get();
+
+        if (state.instantCommands(pipeline)) {
 
-            MutableComponent text = new TranslatableComponent("gui.twitchmod.frenzy_timer", TimerSystem.frenzyTimerSeconds);
+            MutableComponent text = new TranslatableComponent("gui.twitchmod.frenzy_timer", state.frenzyTimerSeconds(pipeline));
             Minecraft.getInstance().font.drawShadow(event.getMatrixStack(), text, 4, 4, ChatFormatting.GOLD.getColor());
 
         }
@@ -5,10 +5,6 @@ import io.github.icrazyblaze.twitchmod.integration.mods.ChanceCubesIntegration;
 
 public class IntegrationWrapper {
 
-    public static void initModDynamicCommands(String sender) {
-
-    }
-
     public static void initModCommands() {
 
         ChanceCubesIntegration.initCommands();
@@ -11,8 +11,7 @@ import net.minecraft.world.phys.Vec3;
 import net.minecraftforge.registries.ForgeRegistries;
 import net.minecraftforge.registries.RegistryObject;
 
-import static io.github.icrazyblaze.twitchmod.chat.ChatCommands.registerCommand;
-import static io.github.icrazyblaze.twitchmod.util.PlayerHelper.player;
+import static io.github.icrazyblaze.twitchmod.chat.ChatCommands.registerPlayerCommand;
 
 public class ChanceCubesIntegration {
 
@@ -23,15 +22,14 @@ public class ChanceCubesIntegration {
     public static void initCommands() {
         ModProxy.chanceCubesProxy.ifPresent(proxy -> {
 
-            registerCommand(() -> CommandHandlers.setBlock(player().blockPosition(), proxy.CHANCE_CUBE.get().defaultBlockState()), "chancecube", "cube");
-            registerCommand((ChanceCubesIntegration::placeGiantChanceCube), "giantchancecube", "giantcube");
+            registerPlayerCommand(player -> CommandHandlers.setBlock(player.level, player.blockPosition(), proxy.CHANCE_CUBE.get().defaultBlockState()), "chancecube", "cube");
+            registerPlayerCommand((ChanceCubesIntegration::placeGiantChanceCube), "giantchancecube", "giantcube");
 
         });
     }
 
-    public static void placeGiantChanceCube() {
+    public static void placeGiantChanceCube(ServerPlayer player) {
 
-        ServerPlayer player = player();
         Block cube = ModProxy.chanceCubesProxy.get().GIANT_CHANCE_CUBE.get();
 
         Vec3 lookVector = player.getLookAngle();
@@ -41,7 +39,7 @@ public class ChanceCubesIntegration {
 
         BlockPos bpos = new BlockPos(dx, player.getY(), dz);
 
-        CommandHandlers.setBlock(bpos, cube.defaultBlockState());
+        CommandHandlers.setBlock(player.level, bpos, cube.defaultBlockState());
         cube.setPlacedBy(player.level, bpos, cube.defaultBlockState(), player, ItemStack.EMPTY);
 
     }
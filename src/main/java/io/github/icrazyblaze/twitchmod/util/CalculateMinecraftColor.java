@@ -9,10 +9,63 @@ import net.minecraft.ChatFormatting;
 
 import java.awt.*;
 import java.util.Arrays;
-import java.util.Comparator;
 
 public class CalculateMinecraftColor {
 
+    private static final ChatFormatting[] PALETTE = Arrays.stream(ChatFormatting.values()).filter(ChatFormatting::isColor).toArray(ChatFormatting[]::new);
+    private static final int[] PALETTE_RGB = Arrays.stream(PALETTE).mapToInt(ChatFormatting::getColor).toArray();
+
+    /*
+    The RGB cube is split into 16x16x16 cells (4 bits per channel).
+    For every cell we store the palette entries that can be the nearest colour for at least one RGB value inside it.
+    Most cells only have one candidate, so the lookup is a single array read; the rest are refined with an exact search over a few entries.
+    */
+    private static final int CELL_BITS = 4;
+    private static final int CELL_SIZE = 1 << (8 - CELL_BITS);
+    private static final int[] CELL_START = new int[(1 << (CELL_BITS * 3)) + 1];
+    private static final byte[] CELL_CANDIDATES;
+
+    static {
+
+        byte[] candidates = new byte[CELL_START.length * PALETTE.length];
+        int count = 0;
+
+        for (int cell = 0; cell < CELL_START.length - 1; cell++) {
+
+            int rLow = (cell >> (CELL_BITS * 2)) * CELL_SIZE;
+            int gLow = ((cell >> CELL_BITS) & ((1 << CELL_BITS) - 1)) * CELL_SIZE;
+            int bLow = (cell & ((1 << CELL_BITS) - 1)) * CELL_SIZE;
+
+            // The smallest worst-case distance of any palette entry over this cell
+            int bestMax = Integer.MAX_VALUE;
+            for (int rgb : PALETTE_RGB) {
+                bestMax = Math.min(bestMax, maxDistance(rgb >> 16 & 0xFF, rLow) + maxDistance(rgb >> 8 & 0xFF, gLow) + maxDistance(rgb & 0xFF, bLow));
+            }
+
+            // Keep every entry that could match or beat it somewhere in the cell
+            CELL_START[cell] = count;
+            for (int i = 0; i < PALETTE_RGB.length; i++) {
+                int rgb = PALETTE_RGB[i];
+                if (minDistance(rgb >> 16 & 0xFF, rLow) + minDistance(rgb >> 8 & 0xFF, gLow) + minDistance(rgb & 0xFF, bLow) <= bestMax) {
+                    candidates[count++] = (byte) i;
+                }
+            }
+
+        }
+
+        CELL_START[CELL_START.length - 1] = count;
+        CELL_CANDIDATES = Arrays.copyOf(candidates, count);
+
+    }
+
+    private static int minDistance(int channel, int low) {
+        return channel < low ? low - channel : Math.max(0, channel - (low + CELL_SIZE - 1));
+    }
+
+    private static int maxDistance(int channel, int low) {
+        return Math.max(Math.abs(channel - low), Math.abs(channel - (low + CELL_SIZE - 1)));
+    }
+
     /**
      * Takes a Color object and returns the closest Minecraft colour code.
      *
@@ -21,38 +74,106 @@ public class CalculateMinecraftColor {
      * @See https://minecraft.gamepedia.com/Formatting_codes#Color_codes
      */
     public static ChatFormatting findNearestMinecraftColor(Color color) {
-        return Arrays.stream(ChatFormatting.values())
-                .filter(ChatFormatting::isColor)
-                .map(formatting -> {
-                    Color formattingColor = new Color(formatting.getColor());
-
-                    int distance = Math.abs(color.getRed() - formattingColor.getRed()) +
-                            Math.abs(color.getGreen() - formattingColor.getGreen()) +
-                            Math.abs(color.getBlue() - formattingColor.getBlue());
-                    return new FormattingAndDistance(formatting, distance);
-                })
-                .sorted(Comparator.comparing(FormattingAndDistance::getDistance))
-                .map(FormattingAndDistance::getFormatting)
-                .findFirst()
-                .orElse(ChatFormatting.WHITE);
+        return findNearestMinecraftColor(color.getRGB());
     }
 
+    /**
+     * Returns the closest Minecraft colour code to a packed RGB value, using the precomputed lookup table.
+     * This does not allocate.
+     *
+     * @param rgb colour in 0xRRGGBB form (any alpha bits are ignored)
+     * @return the nearest colour formatting code
+     * @since 4.1.0
+     */
+    public static ChatFormatting findNearestMinecraftColor(int rgb) {
+
+        int r = rgb >> 16 & 0xFF;
+        int g = rgb >> 8 & 0xFF;
+        int b = rgb & 0xFF;
 
-    private static class FormattingAndDistance {
-        private final ChatFormatting formatting;
-        private final int distance;
+        int cell = (r >> (8 - CELL_BITS)) << (CELL_BITS * 2) | (g >> (8 - CELL_BITS)) << CELL_BITS | (b >> (8 - CELL_BITS));
+        int start = CELL_START[cell];
+        int end = CELL_START[cell + 1];
 
-        public FormattingAndDistance(ChatFormatting formatting, int distance) {
-            this.formatting = formatting;
-            this.distance = distance;
+        if (end - start == 1) {
+            return PALETTE[CELL_CANDIDATES[start]];
         }
 
-        public ChatFormatting getFormatting() {
-            return formatting;
+        // Exact refinement over the few entries that compete in this cell (ties go to the earliest colour code)
+        int best = CELL_CANDIDATES[start];
+        int bestDistance = Integer.MAX_VALUE;
+
+        for (int i = start; i < end; i++) {
+
+            int candidate = CELL_CANDIDATES[i];
+            int paletteRgb = PALETTE_RGB[candidate];
+            int distance = Math.abs(r - (paletteRgb >> 16 & 0xFF)) + Math.abs(g - (paletteRgb >> 8 & 0xFF)) + Math.abs(b - (paletteRgb & 0xFF));
+
+            if (distance < bestDistance) {
+                best = candidate;
+                bestDistance = distance;
+            }
+
         }
 
-        public int getDistance() {
-            return distance;
+        return PALETTE[best];
+
+    }
+
+    /**
+     * Returns the closest Minecraft colour code to a hex colour string such as the Twitch {@code color} tag.
+     *
+     * @param hex colour in "#RRGGBB" or "RRGGBB" form
+     * @return the nearest colour formatting code, or white if the string is not a valid colour
+     * @since 4.1.0
+     */
+    public static ChatFormatting findNearestMinecraftColor(CharSequence hex) {
+
+        int rgb = parseHexColor(hex);
+
+        if (rgb < 0) {
+            return ChatFormatting.WHITE;
         }
+
+        return findNearestMinecraftColor(rgb);
+
     }
-}
\ No newline at end of file
+
+    /**
+     * Parses a hex colour string without going through {@link Color#decode}.
+     *
+     * @param hex colour in "#RRGGBB" or "RRGGBB" form
+     * @return the colour as 0xRRGGBB, or -1 if the string is not a valid colour
+     * @since 4.1.0
+     */
+    public static int parseHexColor(CharSequence hex) {
+
+        if (hex == null) {
+            return -1;
+        }
+
+        int start = hex.length() > 0 && hex.charAt(0) == '#' ? 1 : 0;
+
+        if (hex.length() - start != 6) {
+            return -1;
+        }
+
+        int rgb = 0;
+
+        for (int i = start; i < hex.length(); i++) {
+
+            int digit = Character.digit(hex.charAt(i), 16);
+
+            if (digit < 0) {
+                return -1;
+            }
+
+            rgb = rgb << 4 | digit;
+
+        }
+
+        return rgb;
+
+    }
+
+}
@@ -15,11 +15,14 @@ import io.github.icrazyblaze.twitchmod.command.twitch.TwitchConnectCommand;
 import io.github.icrazyblaze.twitchmod.command.twitch.TwitchDisconnectCommand;
 import io.github.icrazyblaze.twitchmod.integration.IntegrationWrapper;
 import io.github.icrazyblaze.twitchmod.util.files.BlacklistSystem;
-import io.github.icrazyblaze.twitchmod.util.timers.TimerSystem;
+import io.github.icrazyblaze.twitchmod.util.timers.TickScheduler;
+import io.github.icrazyblaze.twitchmod.util.world.BlockEditJournal;
 import net.minecraft.commands.CommandSourceStack;
 import net.minecraft.commands.Commands;
+import net.minecraft.server.level.ServerPlayer;
 import net.minecraftforge.event.RegisterCommandsEvent;
 import net.minecraftforge.event.TickEvent;
+import net.minecraftforge.event.entity.player.PlayerEvent;
 import net.minecraftforge.event.server.ServerStartedEvent;
 import net.minecraftforge.event.server.ServerStoppingEvent;
 import net.minecraftforge.eventbus.api.SubscribeEvent;
@@ -44,8 +47,10 @@ public class ForgeEventSubscriber {
                 .then(TestCommand.register())
                 .then(StatusCommand.register())
                 .then(QueueCommand.register())
+                .then(StatsCommand.register())
                 .then(BlacklistCommand.register())
                 .then(ListCommand.register())
+                .then(UndoCommand.register())
                 // Register Discord commands
                 .then(dispatcher.register(Commands.literal("discord")
                         .then(DiscordConnectCommand.register())
@@ -56,6 +61,7 @@ public class ForgeEventSubscriber {
         );
 
         BlacklistSystem.loadBlacklistFile();
+        BlacklistSystem.startWatching();
     }
 
     @SubscribeEvent
@@ -65,18 +71,46 @@ public class ForgeEventSubscriber {
 
             // Set the server reference for PlayerHelper
             PlayerHelper.defaultServer = event.world.getServer();
-            TimerSystem.enableTimers = true;
+            ModState.update(state -> state.withTimersEnabled(true));
 
         }
 
     }
 
+    @SubscribeEvent
+    public static void playerLoggedIn(PlayerEvent.PlayerLoggedInEvent event) {
+
+        if (event.getPlayer() instanceof ServerPlayer player) {
+            PlayerHelper.addPlayer(player);
+        }
+
+    }
+
+    @SubscribeEvent
+    public static void playerRespawned(PlayerEvent.PlayerRespawnEvent event) {
+
+        // Respawning creates a new ServerPlayer, so the cached one has to be replaced
+        if (event.getPlayer() instanceof ServerPlayer player) {
+            PlayerHelper.addPlayer(player);
+        }
+
+    }
+
+    @SubscribeEvent
+    public static void playerLoggedOut(PlayerEvent.PlayerLoggedOutEvent event) {
+
+        if (event.getPlayer() instanceof ServerPlayer player) {
+            PlayerHelper.removePlayer(player);
+        }
+
+    }
+
     @SubscribeEvent
     public static void serverStarted(ServerStartedEvent event) {
 
         ChatCommands.initCommands();
         IntegrationWrapper.initModCommands();
-        ChatCommands.initDynamicCommands("", ""); // this initialisation prevents the dynamic commands not being recognised as real commands
+        ChatCommands.freeze();
 
     }
 
@@ -91,8 +125,13 @@ public class ForgeEventSubscriber {
             DiscordConnectionHelper.disconnectDiscord();
         }
 
-        TimerSystem.enableTimers = false;
+        BlacklistSystem.stopWatching();
+
+        ModState.update(state -> state.withTimersEnabled(false));
         PlayerHelper.defaultServer = null; // Set to null again to avoid errors when restarting world
+        PlayerHelper.clearPlayers();
+        TickScheduler.clear();
+        BlockEditJournal.clear();
 
     }
 
@@ -0,0 +1,172 @@
+package io.github.icrazyblaze.twitchmod.util;
+
+import java.util.Arrays;
+import java.util.function.UnaryOperator;
+
+/**
+ * Holds the state shared between the server thread, the bot threads and the overlays: book logging, whether the timers run,
+ * and each command pipeline's peace mode, frenzy mode and death timer.
+ * <p>
+ * The server thread is the only writer. Every change replaces the whole state with a new immutable snapshot through a volatile
+ * reference, so other threads always see a consistent state (e.g. frenzy mode together with its seconds left) without locking.
+ * Things that only apply to one message, like forcing a broadcaster's command, are passed along with the message instead.
+ * <p>
+ * Each pipeline's timers are packed into a single long, so even with many pipelines a change only copies a few bytes per pipeline.
+ * A bit mask of the pipelines with a running timer lets the timers tick without checking every pipeline.
+ *
+ * @see io.github.icrazyblaze.twitchmod.chat.ChatPicker
+ * @see io.github.icrazyblaze.twitchmod.util.timers.TimerSystem
+ * @see io.github.icrazyblaze.twitchmod.chat.CommandPipelines
+ * @since 4.1.0
+ */
+public class ModState {
+
+    // Flags in the low bits of a pipeline's timers, and the seconds left on each timer in 16 bits each above them
+    private static final long DEATH = 1;
+    private static final long FRENZY = 1 << 1;
+    private static final long PEACE = 1 << 2;
+    private static final long DEATH_PAUSED = 1 << 3;
+    private static final long RUNNING = DEATH | FRENZY | PEACE;
+    private static final int DEATH_SHIFT = 16;
+    private static final int FRENZY_SHIFT = 32;
+    private static final int PEACE_SHIFT = 48;
+    private static final long DEFAULT_TIMERS = 60L << DEATH_SHIFT | 10L << FRENZY_SHIFT | 30L << PEACE_SHIFT;
+
+    private static volatile Snapshot snapshot = new Snapshot(false, true, new long[0], 0);
+
+    /**
+     * @return the current state, which can be read from any thread
+     */
+    public static Snapshot get() {
+        return snapshot;
+    }
+
+    /**
+     * Replaces the state with an updated copy. Must only be called on the server thread.
+     *
+     * @param update makes the new state from the current one, e.g. {@code state -> state.withLogMessages(true)}
+     */
+    public static void update(UnaryOperator<Snapshot> update) {
+        snapshot = update.apply(snapshot);
+    }
+
+    /**
+     * @param logMessages   whether chat is being logged for a book
+     * @param timersEnabled whether the timers tick (only while a world is running)
+     * @param timers        each pipeline's packed timers, indexed by pipeline ID. Pipelines past the end have never had a timer set
+     * @param running       a bit for each pipeline with a death, frenzy or peace timer counting down
+     */
+    public record Snapshot(boolean logMessages, boolean timersEnabled, long[] timers, long running) {
+
+        /**
+         * @return whether chat commands are checked at all for the pipeline (turned off during peace mode)
+         */
+        public boolean chatEnabled(int pipeline) {
+            return (timers(pipeline) & PEACE) == 0;
+        }
+
+        /**
+         * @return whether the pipeline's chat commands run as soon as they are sent (frenzy mode)
+         */
+        public boolean instantCommands(int pipeline) {
+            return (timers(pipeline) & FRENZY) != 0;
+        }
+
+        public boolean deathTimerEnabled(int pipeline) {
+            return (timers(pipeline) & DEATH) != 0;
+        }
+
+        public boolean peaceTimerEnabled(int pipeline) {
+            return (timers(pipeline) & PEACE) != 0;
+        }
+
+        public int deathTimerSeconds(int pipeline) {
+            return seconds(timers(pipeline), DEATH_SHIFT);
+        }
+
+        public int frenzyTimerSeconds(int pipeline) {
+            return seconds(timers(pipeline), FRENZY_SHIFT);
+        }
+
+        public int peaceTimerSeconds(int pipeline) {
+            return seconds(timers(pipeline), PEACE_SHIFT);
+        }
+
+        public Snapshot withLogMessages(boolean logMessages) {
+            return new Snapshot(logMessages, timersEnabled, timers, running);
+        }
+
+        public Snapshot withTimersEnabled(boolean timersEnabled) {
+            return new Snapshot(logMessages, timersEnabled, timers, running);
+        }
+
+        public Snapshot withDeathTimer(int pipeline, boolean enabled, int seconds) {
+            return withTimers(pipeline, withSeconds(withFlag(timers(pipeline), DEATH, enabled), DEATH_SHIFT, seconds));
+        }
+
+        public Snapshot withDeathTimerEnabled(int pipeline, boolean enabled) {
+            return withTimers(pipeline, withFlag(timers(pipeline), DEATH, enabled));
+        }
+
+        public Snapshot withFrenzyTimer(int pipeline, boolean enabled, int seconds) {
+            return withTimers(pipeline, withSeconds(withFlag(timers(pipeline), FRENZY, enabled), FRENZY_SHIFT, seconds));
+        }
+
+        public Snapshot withPeaceTimer(int pipeline, boolean enabled, int seconds) {
+            return withTimers(pipeline, withSeconds(withFlag(timers(pipeline), PEACE, enabled), PEACE_SHIFT, seconds));
+        }
+
+        /**
+         * Stops the pipeline's death timer while frenzy or peace mode is on, remembering whether it was running.
+         */
+        public Snapshot withDeathTimerPaused(int pipeline) {
+
+            long current = timers(pipeline);
+            return withTimers(pipeline, withFlag(withFlag(current, DEATH_PAUSED, (current & DEATH) != 0), DEATH, false));
+
+        }
+
+        /**
+         * Starts the pipeline's death timer again if it was running when it was paused.
+         */
+        public Snapshot withDeathTimerResumed(int pipeline) {
+
+            long current = timers(pipeline);
+            return withTimers(pipeline, withFlag(withFlag(current, DEATH, (current & DEATH_PAUSED) != 0), DEATH_PAUSED, false));
+
+        }
+
+        private long timers(int pipeline) {
+            return pipeline < timers.length ? timers[pipeline] : DEFAULT_TIMERS;
+        }
+
+        private Snapshot withTimers(int pipeline, long value) {
+
+            long[] updated = Arrays.copyOf(timers, Math.max(timers.length, pipeline + 1));
+
+            // Pipelines that have never had a timer set start with the default seconds
+            Arrays.fill(updated, timers.length, updated.length, DEFAULT_TIMERS);
+            updated[pipeline] = value;
+
+            long bit = 1L << pipeline;
+            long updatedRunning = (value & RUNNING) != 0 ? running | bit : running & ~bit;
+
+            return new Snapshot(logMessages, timersEnabled, updated, updatedRunning);
+
+        }
+
+        private static int seconds(long timers, int shift) {
+            return (int) (timers >>> shift) & 0xFFFF;
+        }
+
+        private static long withSeconds(long timers, int shift, int seconds) {
+            return timers & ~(0xFFFFL << shift) | (long) Math.min(Math.max(seconds, 0), 0xFFFF) << shift;
+        }
+
+        private static long withFlag(long timers, long flag, boolean set) {
+            return set ? timers | flag : timers & ~flag;
+        }
+
+    }
+
+}
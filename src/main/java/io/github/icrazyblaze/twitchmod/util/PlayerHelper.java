@@ -4,65 +4,138 @@ package io.github.icrazyblaze.twitchmod.util;
 import io.github.icrazyblaze.twitchmod.config.ConfigManager;
 import net.minecraft.server.MinecraftServer;
 import net.minecraft.server.level.ServerPlayer;
-import net.minecraft.server.players.PlayerList;
 import net.minecraftforge.common.ForgeConfigSpec;
 
-import java.util.List;
-
+import java.util.*;
+
+/**
+ * Keeps track of the players on the server, so commands don't have to search the player list every time they need one.
+ * <p>
+ * Players are cached by UUID when they log in, and removed when they log out. Respawning replaces a player's {@link ServerPlayer},
+ * so the cache is updated then too. The cache is only changed on the server thread, and each change replaces the whole map,
+ * so the bots can read it from their own threads without locking.
+ *
+ * @see ForgeEventSubscriber
+ */
 public class PlayerHelper {
 
     public static MinecraftServer defaultServer = null;
     public static ForgeConfigSpec.ConfigValue<List<? extends String>> affectedPlayers = ConfigManager.PLAYERS_AFFECTED;
-    private static String username = "";
+    private static volatile Map<UUID, ServerPlayer> players = Collections.emptyMap();
+    private static volatile List<ServerPlayer> affectedCache = null;
+    private static List<? extends String> affectedCacheFor = null;
 
     /**
-     * This method gets a reference to the player, using the username specified. If the player is not found, it will get the first player in the list.
+     * This method gets a reference to the main player, which is the first affected player online. If none of them are online, it will get the first player in the list.
+     * Commands are sent their target player instead, so this is only used for things that aren't aimed at anyone, like the death timer and bot status messages.
      *
-     * @return player
+     * @return player, or null if nobody is online
      */
     public static ServerPlayer player() {
 
-        // Search player list
-        PlayerList playerList = defaultServer.getPlayerList();
-        ServerPlayer player = playerList.getPlayerByName(getUsername());
+        List<ServerPlayer> affected = getAffectedPlayers();
 
-        if (player == null) {
-            player = getDefaultPlayer();
+        if (!affected.isEmpty()) {
+            return affected.get(0);
         }
 
-        return player;
+        return getDefaultPlayer();
 
     }
 
     private static ServerPlayer getDefaultPlayer() {
 
-        // Get the first player in the list
-        PlayerList playerList = defaultServer.getPlayerList();
+        // Get the first player to log in
+        Iterator<ServerPlayer> iterator = players.values().iterator();
+        return iterator.hasNext() ? iterator.next() : null;
+
+    }
+
+    /**
+     * Finds the online players named in the affected players config. The names are only matched again when someone logs in or out, or the config changes.
+     *
+     * @return the affected players who are online, in the order they are listed in the config
+     * @since 4.1.0
+     */
+    public static List<ServerPlayer> getAffectedPlayers() {
+
+        List<? extends String> names = affectedPlayers.get();
+        List<ServerPlayer> affected = affectedCache;
+
+        if (affected != null && names == affectedCacheFor) {
+            return affected;
+        }
+
+        Collection<ServerPlayer> online = players.values();
+        List<ServerPlayer> resolved = new ArrayList<>(names.size());
 
-        if (playerList.getPlayerCount() == 0) {
-            return null;
+        for (String name : names) {
+            for (ServerPlayer player : online) {
+                if (player.getGameProfile().getName().equalsIgnoreCase(name)) {
+                    resolved.add(player);
+                    break;
+                }
+            }
         }
 
-        return playerList.getPlayers().get(0);
+        affected = Collections.unmodifiableList(resolved);
+        affectedCacheFor = names;
+        affectedCache = affected;
+
+        return affected;
 
     }
 
-    public static String getUsername() {
+    /**
+     * @return every player on the server, in the order they logged in
+     * @since 4.1.0
+     */
+    public static Collection<ServerPlayer> getPlayers() {
+        return players.values();
+    }
 
-        try {
-            if (username.isEmpty()) {
-                username = getDefaultPlayer().getName().getString();
-            }
+    /**
+     * Adds a player to the cache, or replaces their old {@link ServerPlayer} after respawning. Must only be called on the server thread.
+     *
+     * @since 4.1.0
+     */
+    public static void addPlayer(ServerPlayer player) {
 
-            return username;
+        Map<UUID, ServerPlayer> updated = new LinkedHashMap<>(players);
+        updated.put(player.getUUID(), player);
+        setPlayers(updated);
 
-        } catch (Exception e) {
-            return "";
-        }
+    }
+
+    /**
+     * Removes a player from the cache. Must only be called on the server thread.
+     *
+     * @since 4.1.0
+     */
+    public static void removePlayer(ServerPlayer player) {
+
+        Map<UUID, ServerPlayer> updated = new LinkedHashMap<>(players);
+        updated.remove(player.getUUID());
+        setPlayers(updated);
 
     }
 
-    public static void setUsername(String newname) {
-        username = newname;
+    /**
+     * Empties the cache when the server stops.
+     *
+     * @since 4.1.0
+     */
+    public static void clearPlayers() {
+        setPlayers(new LinkedHashMap<>());
     }
+
+    private static void setPlayers(Map<UUID, ServerPlayer> updated) {
+
+        players = Collections.unmodifiableMap(updated);
+
+        // Affected players are matched by name again the next time they are needed
+        affectedCache = null;
+
+    }
+
 }
@@ -0,0 +1,177 @@
+package io.github.icrazyblaze.twitchmod.util;
+
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Finds the most frequent items in a stream using a fixed number of counters (the Space-Saving algorithm).
+ * <p>
+ * While there are free counters every item is counted exactly. After that, a new item takes over the counter with the smallest count,
+ * starting from that count plus one. The count can be too high by at most the count it took over (its error), so any item
+ * that was seen more than (total / capacity) times is guaranteed to be in the top list.
+ * Counters are kept in a min-heap, so every update is O(log capacity).
+ * Items are ints (e.g. viewer IDs from {@link io.github.icrazyblaze.twitchmod.chat.ViewerRegistry}), so nothing is boxed.
+ *
+ * @since 4.1.0
+ */
+public class SpaceSaving {
+
+    private final Int2IntOpenHashMap positions;
+    private final int[] keys;
+    private final long[] counts;
+    private final long[] errors;
+    private int size = 0;
+    private long total = 0;
+
+    public SpaceSaving(int capacity) {
+
+        positions = new Int2IntOpenHashMap(capacity);
+        positions.defaultReturnValue(-1);
+        keys = new int[capacity];
+        counts = new long[capacity];
+        errors = new long[capacity];
+
+    }
+
+    /**
+     * Counts one occurrence of an item.
+     */
+    public void add(int key) {
+
+        total++;
+        int position = positions.get(key);
+
+        if (position >= 0) {
+
+            counts[position]++;
+            siftDown(position);
+
+        } else if (size < keys.length) {
+
+            keys[size] = key;
+            counts[size] = 1;
+            errors[size] = 0;
+            positions.put(key, size);
+            siftUp(size++);
+
+        } else {
+
+            // Take over the smallest counter, which is the root of the heap
+            positions.remove(keys[0]);
+            errors[0] = counts[0];
+            counts[0]++;
+            keys[0] = key;
+            positions.put(key, 0);
+            siftDown(0);
+
+        }
+
+    }
+
+    /**
+     * @param limit how many items to return
+     * @return the most frequent items, most frequent first
+     */
+    public List<Entry> getTop(int limit) {
+
+        List<Entry> entries = new ArrayList<>(size);
+
+        for (int i = 0; i < size; i++) {
+            entries.add(new Entry(keys[i], counts[i], errors[i]));
+        }
+
+        entries.sort(Comparator.comparingLong(Entry::count).reversed());
+        return entries.subList(0, Math.min(limit, entries.size()));
+
+    }
+
+    /**
+     * @return how many items have been counted in total
+     */
+    public long getTotal() {
+        return total;
+    }
+
+    public void clear() {
+
+        positions.clear();
+        size = 0;
+        total = 0;
+
+    }
+
+    private void siftUp(int position) {
+
+        while (position > 0) {
+
+            int parent = (position - 1) / 2;
+
+            if (counts[parent] <= counts[position]) {
+                return;
+            }
+
+            swap(position, parent);
+            position = parent;
+
+        }
+
+    }
+
+    private void siftDown(int position) {
+
+        while (true) {
+
+            int smallest = position;
+            int left = position * 2 + 1;
+            int right = left + 1;
+
+            if (left < size && counts[left] < counts[smallest]) {
+                smallest = left;
+            }
+            if (right < size && counts[right] < counts[smallest]) {
+                smallest = right;
+            }
+            if (smallest == position) {
+                return;
+            }
+
+            swap(position, smallest);
+            position = smallest;
+
+        }
+
+    }
+
+    private void swap(int a, int b) {
+
+        int key = keys[a];
+        keys[a] = keys[b];
+        keys[b] = key;
+
+        long count = counts[a];
+        counts[a] = counts[b];
+        counts[b] = count;
+
+        long error = errors[a];
+        errors[a] = errors[b];
+        errors[b] = error;
+
+        positions.put(keys[a], a);
+        positions.put(keys[b], b);
+
+    }
+
+    /**
+     * A counted item.
+     *
+     * @param key   the item
+     * @param count how many times the item was counted, which may be too high by up to the error
+     * @param error how much the count may be too high by
+     */
+    public record Entry(int key, long count, long error) {
+    }
+
+}
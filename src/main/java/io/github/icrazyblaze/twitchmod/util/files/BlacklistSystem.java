@@ -9,15 +9,18 @@ import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.PrintWriter;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.util.Arrays;
-import java.util.Collections;
+import java.nio.file.*;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
+import java.util.Set;
 import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 /**
  * This class is responsible for reading from and writing to the blacklist file.
+ * The blacklist is held as an immutable snapshot which is replaced whenever it changes, so checking a command never touches the file.
+ * A background thread reloads the snapshot when the file is edited by hand.
  *
  * @see io.github.icrazyblaze.twitchmod.chat.ChatPicker
  */
@@ -25,10 +28,11 @@ public class BlacklistSystem {
 
     private static final Supplier<Path> blacklistPath = () -> FMLPaths.CONFIGDIR.get().resolve("command-blacklist.txt");
     private static final File blacklistTextFile = blacklistPath.get().toFile();
-    private static List<String> blacklist;
+    private static volatile Snapshot snapshot = new Snapshot(List.of());
+    private static WatchService watchService = null;
 
     public static List<String> getBlacklist() {
-        return blacklist;
+        return snapshot.entries();
     }
 
     /**
@@ -36,12 +40,20 @@ public class BlacklistSystem {
      *
      * @param toAdd The string to add to the blacklist and its text file.
      */
-    public static void addToBlacklist(String toAdd) {
+    public static synchronized void addToBlacklist(String toAdd) {
+
+        List<String> blacklist = snapshot.entries();
+
         if (blacklist.contains(toAdd)) {
             return;
         }
-        blacklist.add(toAdd);
+
+        List<String> updated = new ArrayList<>(blacklist);
+        updated.add(toAdd);
+
+        snapshot = new Snapshot(updated);
         writeBlacklistToFile();
+
     }
 
     /**
@@ -49,23 +61,31 @@ public class BlacklistSystem {
      *
      * @param toRemove The string to remove from the blacklist and its text file.
      */
-    public static void removeFromBlacklist(String toRemove) {
+    public static synchronized void removeFromBlacklist(String toRemove) {
+
+        List<String> blacklist = snapshot.entries();
+
         if (!blacklist.contains(toRemove)) {
             return;
         }
-        blacklist.removeAll(Collections.singleton(toRemove));
+
+        List<String> updated = new ArrayList<>(blacklist);
+        updated.removeIf(toRemove::equals);
+
+        snapshot = new Snapshot(updated);
         writeBlacklistToFile();
+
     }
 
     /**
      * Writes the contents of the blacklist to a text file.
      */
-    public static void writeBlacklistToFile() {
+    public static synchronized void writeBlacklistToFile() {
 
         try {
             FileWriter writer = new FileWriter(blacklistTextFile);
 
-            for (String str : blacklist) {
+            for (String str : snapshot.entries()) {
 
                 // Remove prefixes when writing to the file for consistency
                 if (str.startsWith(BotConfig.getCommandPrefix())) {
@@ -85,40 +105,42 @@ public class BlacklistSystem {
     /**
      * Loads the blacklist file, or creates the file if it doesn't already exist.
      */
-    public static void loadBlacklistFile() {
+    public static synchronized void loadBlacklistFile() {
 
         try {
 
             blacklistTextFile.createNewFile(); // Create file if it doesn't already exist
-            blacklist = Files.readAllLines(blacklistPath.get()); // Read into list
-
-            // Remove all empty objects
-            blacklist.removeAll(Arrays.asList("", null));
+            List<String> lines = Files.readAllLines(blacklistPath.get()); // Read into list
+            List<String> blacklist = new ArrayList<>(lines.size());
 
-            // Remove prefixes from the start of commands in the blacklist
-            for (int i = 0; i < blacklist.size(); i++) {
-                if (blacklist.get(i).startsWith(BotConfig.getCommandPrefix())) {
+            for (String line : lines) {
 
-                    blacklist.set(i, blacklist.get(i).substring(BotConfig.getCommandPrefix().length()));
+                // Skip empty lines
+                if (line.isEmpty()) {
+                    continue;
+                }
 
+                // Remove prefixes from the start of commands in the blacklist
+                if (line.startsWith(BotConfig.getCommandPrefix())) {
+                    line = line.substring(BotConfig.getCommandPrefix().length());
                 }
+
+                blacklist.add(line);
+
             }
 
+            snapshot = new Snapshot(blacklist);
+
         } catch (IOException e) {
             Main.logger.error(new TranslatableComponent("exception.twitchmod.blacklist_load_exception", e).getString());
         }
 
-        // Fix for blacklist being null - set to empty instead
-        if (blacklist == null) {
-            blacklist = Collections.emptyList();
-        }
-
     }
 
     /**
      * Clears the blacklist and its text file.
      */
-    public static void clearBlacklist() {
+    public static synchronized void clearBlacklist() {
 
         try {
 
@@ -126,7 +148,7 @@ public class BlacklistSystem {
             PrintWriter pr = new PrintWriter(blacklistTextFile);
             pr.close();
 
-            blacklist.clear();
+            snapshot = new Snapshot(List.of());
 
         } catch (IOException e) {
             Main.logger.error(e);
@@ -134,13 +156,103 @@ public class BlacklistSystem {
 
     }
 
+    /**
+     * @param command the command name, case doesn't matter
+     * @return true if the command is on the blacklist
+     */
     public static boolean isBlacklisted(String command) {
+        return snapshot.lookup().contains(command.toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * Starts a background thread that reloads the blacklist whenever its text file changes on disk.
+     * Calling this while the thread is already running does nothing.
+     *
+     * @since 4.1.0
+     */
+    public static synchronized void startWatching() {
+
+        if (watchService != null) {
+            return;
+        }
+
+        try {
+
+            WatchService service = FileSystems.getDefault().newWatchService();
+            blacklistPath.get().getParent().register(service, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+            watchService = service;
+
+            Thread watcherThread = new Thread(() -> watchBlacklistFile(service), "TwitchMod blacklist watcher");
+            watcherThread.setDaemon(true);
+            watcherThread.start();
+
+        } catch (IOException e) {
+            Main.logger.error(new TranslatableComponent("exception.twitchmod.blacklist_load_exception", e).getString());
+        }
+
+    }
+
+    /**
+     * Stops the thread started by {@link #startWatching()}.
+     *
+     * @since 4.1.0
+     */
+    public static synchronized void stopWatching() {
+
+        if (watchService == null) {
+            return;
+        }
+
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            Main.logger.error(e);
+        }
+
+        watchService = null;
+
+    }
+
+    private static void watchBlacklistFile(WatchService service) {
+
+        Path fileName = blacklistPath.get().getFileName();
 
-        if (!blacklist.isEmpty()) {
-            return blacklist.contains(command);
-        } else {
-            return false;
+        try {
+            while (true) {
+
+                WatchKey key = service.take();
+                boolean changed = false;
+
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (fileName.equals(event.context())) {
+                        changed = true;
+                    }
+                }
+
+                if (changed) {
+                    loadBlacklistFile();
+                }
+
+                if (!key.reset()) {
+                    return;
+                }
+
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Watching was stopped
         }
 
     }
+
+    /**
+     * An immutable copy of the blacklist, with a lower case set for fast lookups.
+     */
+    private record Snapshot(List<String> entries, Set<String> lookup) {
+
+        Snapshot(List<String> entries) {
+            this(List.copyOf(entries), entries.stream().map(entry -> entry.toLowerCase(Locale.ROOT)).collect(Collectors.toUnmodifiableSet()));
+        }
+
+    }
+
 }
@@ -0,0 +1,117 @@
+package io.github.icrazyblaze.twitchmod.util.timers;
+
+import io.github.icrazyblaze.twitchmod.Main;
+import io.github.icrazyblaze.twitchmod.config.ConfigManager;
+import io.github.icrazyblaze.twitchmod.util.world.BlockEditJournal;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntPredicate;
+
+/**
+ * Runs large chat effects (domes, mob waves, replacing an area) a little at a time, so they don't all happen in one tick and lag the server.
+ * <p>
+ * Every tick, the scheduled tasks take turns doing one step each until the configured time budget is used up, measured with
+ * {@link System#nanoTime()}. Tasks that aren't finished carry on next tick from where they stopped, and a callback can be run once a task is done.
+ * Block changes made by a task are recorded in the {@link BlockEditJournal} as part of the chat command that scheduled it.
+ * Only used from the server thread.
+ *
+ * @see TimerSystem
+ * @see io.github.icrazyblaze.twitchmod.util.world.BlockEditTask
+ * @since 4.1.0
+ */
+public class TickScheduler {
+
+    private static final ArrayDeque<Scheduled> tasks = new ArrayDeque<>();
+
+    /**
+     * A large effect split into small steps.
+     */
+    @FunctionalInterface
+    public interface Task {
+
+        /**
+         * Does a small piece of the effect, which should only take a fraction of a millisecond.
+         *
+         * @return true once the effect is finished
+         */
+        boolean step();
+
+    }
+
+    public static void schedule(Task task) {
+        schedule(task, null);
+    }
+
+    /**
+     * @param task       the effect to run over the next ticks
+     * @param onComplete run on the server thread once the task is finished, or null
+     */
+    public static void schedule(Task task, Runnable onComplete) {
+
+        int change = BlockEditJournal.isRecording() ? BlockEditJournal.getChange() : BlockEditJournal.NO_CHANGE;
+        tasks.addLast(new Scheduled(task, onComplete, change));
+
+    }
+
+    /**
+     * @return how many tasks haven't finished yet
+     */
+    public static int size() {
+        return tasks.size();
+    }
+
+    /**
+     * Stops the unfinished tasks started by chat commands whose changes have been undone, so they don't carry on placing blocks.
+     *
+     * @param changeUndone tests a change ID from {@link BlockEditJournal}
+     */
+    public static void cancel(IntPredicate changeUndone) {
+        tasks.removeIf(scheduled -> scheduled.change() != BlockEditJournal.NO_CHANGE && changeUndone.test(scheduled.change()));
+    }
+
+    public static void clear() {
+        tasks.clear();
+    }
+
+    /**
+     * Runs steps of the scheduled tasks in turn until they are all finished or this tick's budget is used up.
+     * At least one step runs every tick, so tasks always finish even with a very small budget.
+     */
+    static void tick() {
+
+        if (tasks.isEmpty()) {
+            return;
+        }
+
+        long deadline = System.nanoTime() + TimeUnit.MICROSECONDS.toNanos(ConfigManager.EFFECT_TICK_BUDGET.get());
+
+        do {
+
+            Scheduled scheduled = tasks.pollFirst();
+
+            if (scheduled.change() != BlockEditJournal.NO_CHANGE) {
+                BlockEditJournal.resumeChange(scheduled.change());
+            }
+
+            // The completion callback is part of the same change, so the blocks it edits can be undone with the rest
+            try {
+                if (!scheduled.task().step()) {
+                    tasks.addLast(scheduled);
+                } else if (scheduled.onComplete() != null) {
+                    scheduled.onComplete().run();
+                }
+            } catch (Exception e) {
+                Main.logger.error("A chat effect failed and was stopped", e);
+            } finally {
+                BlockEditJournal.endChange();
+            }
+
+        } while (!tasks.isEmpty() && System.nanoTime() - deadline < 0);
+
+    }
+
+    private record Scheduled(Task task, Runnable onComplete, int change) {
+    }
+
+}
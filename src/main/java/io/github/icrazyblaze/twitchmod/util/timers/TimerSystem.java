@@ -2,8 +2,11 @@ package io.github.icrazyblaze.twitchmod.util.timers;
 
 import io.github.icrazyblaze.twitchmod.CommandHandlers;
 import io.github.icrazyblaze.twitchmod.chat.ChatPicker;
+import io.github.icrazyblaze.twitchmod.chat.ChatPickerHelper;
+import io.github.icrazyblaze.twitchmod.chat.CommandPipelines;
 import io.github.icrazyblaze.twitchmod.config.ConfigManager;
-import io.github.icrazyblaze.twitchmod.util.PlayerHelper;
+import io.github.icrazyblaze.twitchmod.util.ModState;
+import net.minecraft.server.level.ServerPlayer;
 import net.minecraftforge.common.ForgeConfigSpec;
 import net.minecraftforge.event.TickEvent;
 import net.minecraftforge.eventbus.api.SubscribeEvent;
@@ -11,29 +14,36 @@ import net.minecraftforge.eventbus.api.SubscribeEvent;
 
 /**
  * This class is used for countdown timers such as the Death Timer as thread.sleep cannot be called while playing.
- * Timers are set and reset externally by changing their respective condition.
+ * Timers are set and reset externally by changing their respective condition in {@link ModState}.
+ * Every {@link CommandPipelines command pipeline} has its own timers and picks its own commands.
  *
  * @see io.github.icrazyblaze.twitchmod.CommandHandlers
  */
 public class TimerSystem {
 
-    public static boolean enableTimers = true;
-    public static ForgeConfigSpec.ConfigValue<Integer> chatSecondsTrigger = ConfigManager.CHOOSE_COMMAND_DELAY;
-    public static int chatSeconds = chatSecondsTrigger.get();
-    public static int deathTimerSeconds = 60;
-    public static boolean deathTimerEnabled = false;
-    public static int frenzyTimerSeconds = 10;
-    public static int peaceTimerSeconds = 30;
-    public static boolean peaceTimerEnabled = false;
-    public static ForgeConfigSpec.ConfigValue<Integer> messageSecondsTrigger = ConfigManager.CHOOSE_MESSAGE_DELAY;
-    public static int messageSeconds = messageSecondsTrigger.get();
+    public static final ForgeConfigSpec.ConfigValue<Integer> chatSecondsTrigger = ConfigManager.CHOOSE_COMMAND_DELAY;
+    public static final ForgeConfigSpec.ConfigValue<Integer> messageSecondsTrigger = ConfigManager.CHOOSE_MESSAGE_DELAY;
+    // Only used on the server thread, the timers shown on screen are in ModState
+    private static final int[] nextPick = new int[CommandPipelines.MAX_PIPELINES];
+    private static int seconds = 0;
+    private static int messageSeconds = messageSecondsTrigger.get();
     static int ticks = 0;
 
 
     @SubscribeEvent
     public static void tickTimer(TickEvent.ServerTickEvent event) {
 
-        if (event.phase == TickEvent.Phase.END && enableTimers) {
+        if (event.phase != TickEvent.Phase.END) {
+            return;
+        }
+
+        // Process chat messages that arrived from the bots since the last tick, even while the timers are stopped
+        ChatPickerHelper.drainIngestQueue();
+
+        // Carry on with large effects, as far as this tick's budget allows, so they are never left half-built
+        TickScheduler.tick();
+
+        if (ModState.get().timersEnabled()) {
 
             ticks++;
 
@@ -47,44 +57,45 @@ public class TimerSystem {
 
     public static void second() {
 
-        if (chatSeconds > 0) {
-            chatSeconds--; // Seconds left decreases by 1
-        } else if (chatSeconds == 0) {
+        seconds++;
 
-            ChatPicker.pickRandomChat();
+        // Each pipeline picks its commands on its own schedule, and only pipelines with commands waiting are checked
+        int period = chatSecondsTrigger.get() + 1;
+        long waiting = CommandPipelines.getWaiting();
 
-            // Reset timer
-            chatSeconds = chatSecondsTrigger.get();
+        while (waiting != 0) {
 
-        }
+            int pipeline = Long.numberOfTrailingZeros(waiting);
+            waiting &= waiting - 1;
 
-        // Death timer
-        if (deathTimerEnabled) {
-            if (deathTimerSeconds > 0) {
-                deathTimerSeconds--;
-            } else if (deathTimerSeconds == 0) {
-                PlayerHelper.player().kill();
-                deathTimerEnabled = false;
+            // Keep the pipeline's schedule going while it had nothing to pick, as if it had been counting down all along
+            if (nextPick[pipeline] < seconds) {
+                nextPick[pipeline] = seconds + Math.floorMod(nextPick[pipeline] - seconds, period);
             }
-        }
 
-        // Frenzy mode timer
-        if (ChatPicker.instantCommands) {
+            if (nextPick[pipeline] == seconds) {
+
+                ChatPicker.pickRandomChat(pipeline);
+                nextPick[pipeline] = seconds + period;
+
+                if (CommandPipelines.get(pipeline).getWindow().isEmpty()) {
+                    CommandPipelines.clearWaiting(pipeline);
+                }
 
-            if (frenzyTimerSeconds > 0) {
-                frenzyTimerSeconds--;
-            } else if (frenzyTimerSeconds == 0) {
-                CommandHandlers.disableFrenzyTimer();
             }
+
         }
 
-        // Peace timer
-        if (peaceTimerEnabled) {
-            if (peaceTimerSeconds > 0) {
-                peaceTimerSeconds--;
-            } else if (peaceTimerSeconds == 0) {
-                CommandHandlers.disableGraceTimer();
-            }
+        // Only pipelines with a death, frenzy or peace timer running are checked
+        ModState.Snapshot state = ModState.get();
+        long running = state.running();
+
+        while (running != 0) {
+
+            int pipeline = Long.numberOfTrailingZeros(running);
+            running &= running - 1;
+
+            pipelineSecond(state, pipeline);
 
         }
 
@@ -98,4 +109,46 @@ public class TimerSystem {
 
         }
     }
+
+    private static void pipelineSecond(ModState.Snapshot state, int pipeline) {
+
+        // Death timer
+        if (state.deathTimerEnabled(pipeline)) {
+            if (state.deathTimerSeconds(pipeline) > 0) {
+                ModState.update(current -> current.withDeathTimer(pipeline, true, current.deathTimerSeconds(pipeline) - 1));
+            } else if (state.deathTimerSeconds(pipeline) == 0) {
+
+                // Only the main player dies, not every affected player
+                ServerPlayer player = CommandPipelines.get(pipeline).getMainPlayer();
+
+                if (player != null) {
+                    player.kill();
+                }
+
+                ModState.update(current -> current.withDeathTimerEnabled(pipeline, false));
+
+            }
+        }
+
+        // Frenzy mode timer
+        if (state.instantCommands(pipeline)) {
+
+            if (state.frenzyTimerSeconds(pipeline) > 0) {
+                ModState.update(current -> current.withFrenzyTimer(pipeline, true, current.frenzyTimerSeconds(pipeline) - 1));
+            } else if (state.frenzyTimerSeconds(pipeline) == 0) {
+                CommandHandlers.disableFrenzyTimer(pipeline, CommandPipelines.get(pipeline).getMainPlayer());
+            }
+        }
+
+        // Peace timer
+        if (state.peaceTimerEnabled(pipeline)) {
+            if (state.peaceTimerSeconds(pipeline) > 0) {
+                ModState.update(current -> current.withPeaceTimer(pipeline, true, current.peaceTimerSeconds(pipeline) - 1));
+            } else if (state.peaceTimerSeconds(pipeline) == 0) {
+                CommandHandlers.disableGraceTimer(pipeline, CommandPipelines.get(pipeline).getMainPlayer());
+            }
+
+        }
+
+    }
 }
@@ -0,0 +1,225 @@
+package io.github.icrazyblaze.twitchmod.util.world;
+
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectLinkedOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.shorts.ShortOpenHashSet;
+import it.unimi.dsi.fastutil.shorts.ShortSet;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.SectionPos;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.network.protocol.Packet;
+import net.minecraft.network.protocol.game.ClientboundBlockUpdatePacket;
+import net.minecraft.network.protocol.game.ClientboundSectionBlocksUpdatePacket;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.Level;
+import net.minecraft.world.level.block.Block;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.chunk.LevelChunk;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Collects block changes and applies them together, grouped by chunk, instead of one full update per block.
+ * <p>
+ * Every block in the batch is placed first without neighbour or client updates. Neighbour and shape updates are then run once for each
+ * block, so blocks in the same batch (e.g. the walls of a cage) see each other's final state rather than reacting to half of the batch.
+ * Players are sent one packet per chunk section with every change in it, instead of one block update packet per position.
+ * Blocks with a block entity (signs, chests) are left to the normal update, so their data is sent along with them.
+ * Light checks are already queued by the light engine and run after the tick, so they are done once for the whole batch anyway.
+ * <p>
+ * Must only be used on the server thread. If the same position is set more than once, the last state is used.
+ * Changes made while a chat command runs are recorded in the {@link BlockEditJournal}.
+ *
+ * @see io.github.icrazyblaze.twitchmod.CommandHandlers#setBlock
+ * @since 4.1.0
+ */
+public class BlockEditBatch {
+
+    private final Level level;
+    private final int flags;
+    // Edits for each chunk by packed chunk position, each in the order they were added by packed block position
+    private final Long2ObjectLinkedOpenHashMap<Long2ObjectLinkedOpenHashMap<BlockState>> chunks = new Long2ObjectLinkedOpenHashMap<>();
+    private int size = 0;
+
+    /**
+     * Creates a batch that applies its changes like {@link Level#setBlockAndUpdate}.
+     */
+    public BlockEditBatch(Level level) {
+        this(level, Block.UPDATE_ALL);
+    }
+
+    /**
+     * @param level the level to change
+     * @param flags the update flags from {@link Block}, e.g. {@link Block#UPDATE_CLIENTS} to change blocks without updating their neighbours
+     */
+    public BlockEditBatch(Level level, int flags) {
+        this.level = level;
+        this.flags = flags;
+    }
+
+    public Level getLevel() {
+        return level;
+    }
+
+    public BlockEditBatch set(BlockPos pos, BlockState state) {
+
+        long chunk = ChunkPos.asLong(SectionPos.blockToSectionCoord(pos.getX()), SectionPos.blockToSectionCoord(pos.getZ()));
+
+        if (chunks.computeIfAbsent(chunk, key -> new Long2ObjectLinkedOpenHashMap<>()).put(pos.asLong(), state) == null) {
+            size++;
+        }
+
+        return this;
+
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Places every block in the batch and sends the changes to players. The batch is empty afterwards and can be used again.
+     *
+     * @return the number of blocks that changed
+     */
+    public int apply() {
+
+        int changed = 0;
+
+        for (Long2ObjectLinkedOpenHashMap<BlockState> edits : chunks.values()) {
+            changed += applyChunk(edits);
+        }
+
+        chunks.clear();
+        size = 0;
+
+        return changed;
+
+    }
+
+    private int applyChunk(Long2ObjectLinkedOpenHashMap<BlockState> edits) {
+
+        List<BlockPos> changedPositions = new ArrayList<>(edits.size());
+        List<BlockState> oldStates = new ArrayList<>(edits.size());
+
+        // Place every block first, without telling anything about it yet
+        int placeFlags = flags & ~(Block.UPDATE_NEIGHBORS | Block.UPDATE_CLIENTS) | Block.UPDATE_KNOWN_SHAPE;
+
+        for (Long2ObjectMap.Entry<BlockState> edit : edits.long2ObjectEntrySet()) {
+
+            BlockPos pos = BlockPos.of(edit.getLongKey());
+            BlockState oldState = level.getBlockState(pos);
+            CompoundTag oldBlockEntity = BlockEditJournal.saveBlockEntity(level, pos);
+
+            if (level.setBlock(pos, edit.getValue(), placeFlags)) {
+                changedPositions.add(pos);
+                oldStates.add(oldState);
+                BlockEditJournal.record(level, pos, oldState, oldBlockEntity, edit.getValue());
+            }
+
+        }
+
+        if (changedPositions.isEmpty()) {
+            return 0;
+        }
+
+        LevelChunk chunk = level.getChunkAt(changedPositions.get(0));
+        boolean sendSections = (flags & Block.UPDATE_CLIENTS) != 0 && level instanceof ServerLevel;
+        Int2ObjectOpenHashMap<ShortSet> changedSections = new Int2ObjectOpenHashMap<>();
+
+        // Then run the updates the flags ask for, now that every block in the chunk is in place
+        for (int i = 0; i < changedPositions.size(); i++) {
+
+            BlockPos pos = changedPositions.get(i);
+            BlockState state = level.getBlockState(pos);
+            int notifyFlags = flags;
+
+            if (sendSections && !state.hasBlockEntity()) {
+                notifyFlags &= ~Block.UPDATE_CLIENTS;
+                changedSections.computeIfAbsent(chunk.getSectionIndex(pos.getY()), index -> new ShortOpenHashSet()).add(SectionPos.sectionRelativePos(pos));
+            }
+
+            notify(pos, oldStates.get(i), state, notifyFlags);
+
+        }
+
+        if (!changedSections.isEmpty()) {
+            sendSections((ServerLevel) level, chunk, changedSections);
+        }
+
+        return changedPositions.size();
+
+    }
+
+    /**
+     * Does the part of {@link Level#markAndNotifyBlock} that placing the block skipped. Placing it already ran the rest
+     * (e.g. points of interest for beds and workstations), which must only happen once per change.
+     */
+    private void notify(BlockPos pos, BlockState oldState, BlockState state, int notifyFlags) {
+
+        if ((notifyFlags & Block.UPDATE_CLIENTS) != 0) {
+            level.sendBlockUpdated(pos, oldState, state, notifyFlags);
+        }
+
+        if ((notifyFlags & Block.UPDATE_NEIGHBORS) != 0) {
+
+            level.blockUpdated(pos, oldState.getBlock());
+
+            if (!level.isClientSide() && state.hasAnalogOutputSignal()) {
+                level.updateNeighbourForOutputSignal(pos, state.getBlock());
+            }
+
+        }
+
+        if ((notifyFlags & Block.UPDATE_KNOWN_SHAPE) == 0) {
+
+            int shapeFlags = notifyFlags & ~(Block.UPDATE_NEIGHBORS | Block.UPDATE_SUPPRESS_DROPS);
+
+            oldState.updateIndirectNeighbourShapes(level, pos, shapeFlags, Block.UPDATE_LIMIT - 1);
+            state.updateNeighbourShapes(level, pos, shapeFlags, Block.UPDATE_LIMIT - 1);
+            state.updateIndirectNeighbourShapes(level, pos, shapeFlags, Block.UPDATE_LIMIT - 1);
+
+        }
+
+    }
+
+    private static void sendSections(ServerLevel level, LevelChunk chunk, Int2ObjectOpenHashMap<ShortSet> changedSections) {
+
+        List<ServerPlayer> players = level.getChunkSource().chunkMap.getPlayers(chunk.getPos(), false);
+
+        if (players.isEmpty()) {
+            return;
+        }
+
+        for (Int2ObjectMap.Entry<ShortSet> section : changedSections.int2ObjectEntrySet()) {
+
+            int sectionIndex = section.getIntKey();
+            ShortSet positions = section.getValue();
+            SectionPos sectionPos = SectionPos.of(chunk.getPos(), chunk.getSectionYFromSectionIndex(sectionIndex));
+            Packet<?> packet;
+
+            // A single block is sent the same way the game sends it
+            if (positions.size() == 1) {
+                packet = new ClientboundBlockUpdatePacket(level, sectionPos.relativeToBlockPos(positions.iterator().nextShort()));
+            } else {
+                packet = new ClientboundSectionBlocksUpdatePacket(sectionPos, positions, chunk.getSection(sectionIndex), false);
+            }
+
+            for (ServerPlayer player : players) {
+                player.connection.send(packet);
+            }
+
+        }
+
+    }
+
+}
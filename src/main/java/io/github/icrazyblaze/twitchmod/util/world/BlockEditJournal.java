@@ -0,0 +1,540 @@
+package io.github.icrazyblaze.twitchmod.util.world;
+
+import io.github.icrazyblaze.twitchmod.Main;
+import io.github.icrazyblaze.twitchmod.config.ConfigManager;
+import io.github.icrazyblaze.twitchmod.util.PlayerHelper;
+import io.github.icrazyblaze.twitchmod.util.timers.TickScheduler;
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import net.minecraft.core.BlockPos;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.nbt.NbtIo;
+import net.minecraft.resources.ResourceKey;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.Clearable;
+import net.minecraft.world.level.Level;
+import net.minecraft.world.level.block.Block;
+import net.minecraft.world.level.block.entity.BlockEntity;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.storage.LevelResource;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Records every block that chat commands change, so the changes can be undone with /ttv undo.
+ * <p>
+ * Changes are kept in a ring of primitive arrays: positions packed into longs with {@link BlockPos#asLong()}, block states as their
+ * IDs in the game's block state palette ({@link Block#getId}), and the level as an index into a small list of dimensions. Only block
+ * entities that get replaced (e.g. a chest that lava was placed over) are saved as NBT. When the ring is full, its older half is
+ * written to a compressed file in the world folder, and read back once everything newer has been undone. Only a few of these files
+ * are kept, so a long stream can't use up memory or disk space.
+ * <p>
+ * Every chat command that runs is one change, so "/ttv undo 3" undoes the last three commands that changed blocks.
+ * Only used from the server thread. The journal is cleared when the server stops, as block state IDs can change between runs.
+ *
+ * @see BlockEditBatch
+ * @see io.github.icrazyblaze.twitchmod.command.UndoCommand
+ * @since 4.1.0
+ */
+public class BlockEditJournal {
+
+    public static final int NO_CHANGE = 0;
+    private static final String FOLDER_NAME = "twitchmod-undo";
+
+    private static final List<ResourceKey<Level>> levels = new ArrayList<>();
+    private static final Deque<Path> segments = new ArrayDeque<>();
+
+    private static long[] positions = null;
+    private static int[] oldStates;
+    private static int[] newStates;
+    private static int[] levelIndexes;
+    private static int[] changes;
+    private static long[] times;
+    private static CompoundTag[] blockEntities;
+    private static int head = 0;
+    private static int count = 0;
+
+    private static int nextChange = NO_CHANGE;
+    private static int currentChange = NO_CHANGE;
+    private static int nextSegment = 0;
+    private static boolean recording = false;
+
+    /**
+     * Starts recording the block changes made by a chat command, which are undone together.
+     */
+    public static void startChange() {
+        recording = true;
+        currentChange = ++nextChange;
+    }
+
+    /**
+     * Carries on recording a change that was started earlier, for effects that run over several ticks.
+     * Its blocks are still undone along with the command that started it, unless newer commands are undone first.
+     *
+     * @param change the ID from {@link #getChange()} while the command was running
+     */
+    public static void resumeChange(int change) {
+        recording = true;
+        currentChange = change;
+    }
+
+    public static void endChange() {
+        recording = false;
+    }
+
+    /**
+     * @return the ID of the change being recorded, or the last one if none is
+     */
+    public static int getChange() {
+        return currentChange;
+    }
+
+    public static boolean isRecording() {
+        return recording;
+    }
+
+    /**
+     * Saves a block entity before it is replaced, so undoing the change can bring back its contents.
+     *
+     * @return the block entity's data, or null if there isn't one or no chat command is running
+     */
+    public static CompoundTag saveBlockEntity(Level level, BlockPos pos) {
+
+        if (!recording) {
+            return null;
+        }
+
+        BlockEntity blockEntity = level.getBlockEntity(pos);
+        return blockEntity == null ? null : blockEntity.saveWithFullMetadata();
+
+    }
+
+    /**
+     * Records a block change if a chat command is running.
+     *
+     * @param oldBlockEntity the data from {@link #saveBlockEntity} before the change, or null
+     */
+    public static void record(Level level, BlockPos pos, BlockState oldState, CompoundTag oldBlockEntity, BlockState newState) {
+
+        if (!recording || level.isClientSide() || oldState == newState) {
+            return;
+        }
+
+        if (positions == null) {
+            allocate(ConfigManager.UNDO_MEMORY_SIZE.get());
+        } else if (count == positions.length) {
+            spillOldest();
+        }
+
+        int levelIndex = levels.indexOf(level.dimension());
+
+        if (levelIndex < 0) {
+            levelIndex = levels.size();
+            levels.add(level.dimension());
+        }
+
+        positions[head] = pos.asLong();
+        oldStates[head] = Block.getId(oldState);
+        newStates[head] = Block.getId(newState);
+        levelIndexes[head] = levelIndex;
+        changes[head] = currentChange;
+        times[head] = System.currentTimeMillis();
+        blockEntities[head] = oldBlockEntity;
+
+        head = (head + 1) % positions.length;
+        count++;
+
+    }
+
+    /**
+     * Undoes the block changes made by the last few chat commands. Effects that run over several ticks record their blocks
+     * in between other commands, so the commands are told apart by their change IDs rather than by which entries are next to each other.
+     * Any of those effects that haven't finished are stopped.
+     *
+     * @return the number of blocks changed back
+     */
+    public static int undoChanges(int changeCount) {
+
+        Rollback rollback = new Rollback();
+        IntOpenHashSet undone = new IntOpenHashSet();
+
+        // Once every entry in memory is gone, the older entries of the changes being undone can still be in the newest segment
+        while ((undone.size() < changeCount || count == 0) && hasEntries()) {
+
+            undone.addAll(newestChanges(changeCount - undone.size(), undone));
+            removeChanges(undone, rollback);
+
+        }
+
+        TickScheduler.cancel(undone::contains);
+        return rollback.apply();
+
+    }
+
+    /**
+     * Undoes every block change made by chat commands in the last few seconds.
+     *
+     * @return the number of blocks changed back
+     */
+    public static int undoSeconds(int seconds) {
+
+        Rollback rollback = new Rollback();
+        IntOpenHashSet undone = new IntOpenHashSet();
+        long since = System.currentTimeMillis() - TimeUnit.SECONDS.toMillis(seconds);
+
+        while (hasEntries() && times[newest()] >= since) {
+            undone.add(changes[newest()]);
+            rollback.add(newest());
+            removeNewest();
+        }
+
+        TickScheduler.cancel(undone::contains);
+        return rollback.apply();
+
+    }
+
+    /**
+     * Forgets every change and deletes the files of older changes. Called when the server stops.
+     */
+    public static void clear() {
+
+        for (Path segment : segments) {
+            deleteSegment(segment);
+        }
+
+        segments.clear();
+        levels.clear();
+        positions = null;
+        blockEntities = null;
+        head = 0;
+        count = 0;
+        recording = false;
+
+    }
+
+    private static void allocate(int capacity) {
+
+        positions = new long[capacity];
+        oldStates = new int[capacity];
+        newStates = new int[capacity];
+        levelIndexes = new int[capacity];
+        changes = new int[capacity];
+        times = new long[capacity];
+        blockEntities = new CompoundTag[capacity];
+
+    }
+
+    private static boolean hasEntries() {
+
+        // Once everything in memory has been undone, carry on with the newest file
+        if (count == 0 && !segments.isEmpty()) {
+            loadSegment(segments.removeLast());
+        }
+
+        return count > 0;
+
+    }
+
+    private static int newest() {
+        return Math.floorMod(head - 1, positions.length);
+    }
+
+    /**
+     * Change IDs only go up, so the newest changes are the ones with the largest IDs, wherever their entries are.
+     *
+     * @return up to {@code limit} of the newest change IDs with entries in memory, leaving out the ones in {@code exclude}
+     */
+    private static IntOpenHashSet newestChanges(int limit, IntOpenHashSet exclude) {
+
+        IntOpenHashSet present = new IntOpenHashSet();
+
+        for (int i = 0; i < count; i++) {
+
+            int change = changes[Math.floorMod(head - 1 - i, positions.length)];
+
+            if (!exclude.contains(change)) {
+                present.add(change);
+            }
+
+        }
+
+        int[] sorted = present.toIntArray();
+        Arrays.sort(sorted);
+
+        IntOpenHashSet newest = new IntOpenHashSet();
+
+        for (int i = sorted.length - 1; i >= 0 && newest.size() < limit; i--) {
+            newest.add(sorted[i]);
+        }
+
+        return newest;
+
+    }
+
+    /**
+     * Takes every entry in memory that belongs to one of the changes out of the ring, newest first, and closes up the gaps they leave.
+     */
+    private static void removeChanges(IntOpenHashSet changeIds, Rollback rollback) {
+
+        int oldest = Math.floorMod(head - count, positions.length);
+
+        for (int i = count - 1; i >= 0; i--) {
+
+            int index = (oldest + i) % positions.length;
+
+            if (changeIds.contains(changes[index])) {
+                rollback.add(index);
+            }
+
+        }
+
+        int kept = 0;
+
+        for (int i = 0; i < count; i++) {
+
+            int from = (oldest + i) % positions.length;
+
+            if (changeIds.contains(changes[from])) {
+                continue;
+            }
+
+            int to = (oldest + kept) % positions.length;
+
+            positions[to] = positions[from];
+            oldStates[to] = oldStates[from];
+            newStates[to] = newStates[from];
+            levelIndexes[to] = levelIndexes[from];
+            changes[to] = changes[from];
+            times[to] = times[from];
+            blockEntities[to] = blockEntities[from];
+            kept++;
+
+        }
+
+        for (int i = kept; i < count; i++) {
+            blockEntities[(oldest + i) % positions.length] = null;
+        }
+
+        head = (oldest + kept) % positions.length;
+        count = kept;
+
+    }
+
+    private static void removeNewest() {
+
+        head = newest();
+        blockEntities[head] = null;
+        count--;
+
+    }
+
+    /**
+     * Moves the older half of the ring to a file, or forgets it if no files are kept.
+     */
+    private static void spillOldest() {
+
+        int spill = positions.length / 2;
+        int oldest = Math.floorMod(head - count, positions.length);
+
+        if (ConfigManager.UNDO_FILE_SEGMENTS.get() > 0 && PlayerHelper.defaultServer != null) {
+
+            Path folder = PlayerHelper.defaultServer.getWorldPath(LevelResource.ROOT).resolve(FOLDER_NAME);
+            Path segment = folder.resolve("changes-" + nextSegment++ + ".dat");
+
+            try {
+
+                Files.createDirectories(folder);
+
+                try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(Files.newOutputStream(segment))))) {
+
+                    out.writeInt(spill);
+
+                    for (int i = 0; i < spill; i++) {
+                        writeEntry(out, (oldest + i) % positions.length);
+                    }
+
+                }
+
+                segments.addLast(segment);
+
+                while (segments.size() > ConfigManager.UNDO_FILE_SEGMENTS.get()) {
+                    deleteSegment(segments.removeFirst());
+                }
+
+            } catch (IOException e) {
+                Main.logger.error("Could not save older block changes for undo: " + e);
+                deleteSegment(segment);
+            }
+
+        }
+
+        for (int i = 0; i < spill; i++) {
+            blockEntities[(oldest + i) % positions.length] = null;
+        }
+
+        count -= spill;
+
+    }
+
+    private static void loadSegment(Path segment) {
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(Files.newInputStream(segment))))) {
+
+            int entries = in.readInt();
+
+            // The ring is empty when a file is read back, so the entries go in from the start in the order they were saved
+            head = 0;
+            count = 0;
+
+            for (int i = 0; i < entries && i < positions.length; i++) {
+                readEntry(in, head);
+                head = (head + 1) % positions.length;
+                count++;
+            }
+
+        } catch (IOException e) {
+            Main.logger.error("Could not read older block changes for undo: " + e);
+        }
+
+        deleteSegment(segment);
+
+    }
+
+    private static void writeEntry(DataOutputStream out, int index) throws IOException {
+
+        out.writeLong(positions[index]);
+        out.writeInt(oldStates[index]);
+        out.writeInt(newStates[index]);
+        out.writeByte(levelIndexes[index]);
+        out.writeInt(changes[index]);
+        out.writeLong(times[index]);
+        out.writeBoolean(blockEntities[index] != null);
+
+        if (blockEntities[index] != null) {
+            NbtIo.write(blockEntities[index], out);
+        }
+
+    }
+
+    private static void readEntry(DataInputStream in, int index) throws IOException {
+
+        positions[index] = in.readLong();
+        oldStates[index] = in.readInt();
+        newStates[index] = in.readInt();
+        levelIndexes[index] = in.readUnsignedByte();
+        changes[index] = in.readInt();
+        times[index] = in.readLong();
+        blockEntities[index] = in.readBoolean() ? NbtIo.read(in) : null;
+
+    }
+
+    private static void deleteSegment(Path segment) {
+
+        try {
+            Files.deleteIfExists(segment);
+        } catch (IOException e) {
+            Main.logger.error("Could not delete undo file " + segment + ": " + e);
+        }
+
+    }
+
+    /**
+     * Collects the entries being undone, newest first, and changes the blocks back with one {@link BlockEditBatch} per level.
+     * A block is only changed back if it is still what the command placed, so anything built there since is left alone.
+     */
+    private static class Rollback {
+
+        private final Map<ResourceKey<Level>, LevelRollback> byLevel = new LinkedHashMap<>();
+
+        void add(int index) {
+
+            ResourceKey<Level> levelKey = levels.get(levelIndexes[index]);
+            ServerLevel level = PlayerHelper.defaultServer == null ? null : PlayerHelper.defaultServer.getLevel(levelKey);
+
+            if (level == null) {
+                return;
+            }
+
+            LevelRollback rollback = byLevel.computeIfAbsent(levelKey, key -> new LevelRollback(level));
+            long pos = positions[index];
+
+            // Check against what an undo of a newer change at the same position is about to place, if there is one
+            int current = rollback.pending.containsKey(pos) ? rollback.pending.get(pos) : Block.getId(level.getBlockState(BlockPos.of(pos)));
+
+            if (current != newStates[index]) {
+                return;
+            }
+
+            rollback.pending.put(pos, oldStates[index]);
+            rollback.blockEntities.put(pos, blockEntities[index]);
+            rollback.batch.set(BlockPos.of(pos), Block.stateById(oldStates[index]));
+
+        }
+
+        int apply() {
+
+            int changed = 0;
+
+            for (LevelRollback rollback : byLevel.values()) {
+                changed += rollback.apply();
+            }
+
+            return changed;
+
+        }
+
+    }
+
+    private static class LevelRollback {
+
+        private final ServerLevel level;
+        private final BlockEditBatch batch;
+        private final Long2IntOpenHashMap pending = new Long2IntOpenHashMap();
+        private final Long2ObjectOpenHashMap<CompoundTag> blockEntities = new Long2ObjectOpenHashMap<>();
+
+        LevelRollback(ServerLevel level) {
+            this.level = level;
+            this.batch = new BlockEditBatch(level);
+        }
+
+        int apply() {
+
+            // Empty containers placed by chat first (like /fill does), so undoing a loot chest doesn't drop its loot
+            for (long pos : pending.keySet()) {
+                Clearable.tryClear(level.getBlockEntity(BlockPos.of(pos)));
+            }
+
+            int changed = batch.apply();
+
+            for (Long2ObjectMap.Entry<CompoundTag> entry : blockEntities.long2ObjectEntrySet()) {
+
+                if (entry.getValue() == null) {
+                    continue;
+                }
+
+                BlockPos pos = BlockPos.of(entry.getLongKey());
+                BlockEntity blockEntity = level.getBlockEntity(pos);
+
+                if (blockEntity != null) {
+                    blockEntity.load(entry.getValue());
+                    blockEntity.setChanged();
+                    level.sendBlockUpdated(pos, blockEntity.getBlockState(), blockEntity.getBlockState(), Block.UPDATE_ALL);
+                }
+
+            }
+
+            return changed;
+
+        }
+
+    }
+
+}
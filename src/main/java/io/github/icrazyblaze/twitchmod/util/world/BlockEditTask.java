@@ -0,0 +1,59 @@
+package io.github.icrazyblaze.twitchmod.util.world;
+
+import io.github.icrazyblaze.twitchmod.util.timers.TickScheduler;
+import net.minecraft.core.BlockPos;
+import net.minecraft.world.level.Level;
+import net.minecraft.world.level.block.state.BlockState;
+
+import java.util.Iterator;
+import java.util.function.Function;
+
+/**
+ * Changes the blocks in a large area a batch at a time for the {@link TickScheduler}, e.g. to build a dome around a player.
+ * The positions are visited lazily, so even a large area doesn't need a list of every block in it.
+ *
+ * @since 4.1.0
+ */
+public class BlockEditTask implements TickScheduler.Task {
+
+    private static final int BLOCKS_PER_STEP = 64;
+
+    private final Iterator<BlockPos> positions;
+    private final Function<BlockPos, BlockState> stateAt;
+    private final BlockEditBatch batch;
+
+    /**
+     * @param level     the level to change
+     * @param positions the positions to visit, which may be reused mutable positions (e.g. from {@link BlockPos#betweenClosed})
+     * @param stateAt   the state to place at a position, or null to leave it as it is
+     */
+    public BlockEditTask(Level level, Iterator<BlockPos> positions, Function<BlockPos, BlockState> stateAt) {
+        this.positions = positions;
+        this.stateAt = stateAt;
+        this.batch = new BlockEditBatch(level);
+    }
+
+    @Override
+    public boolean step() {
+
+        int visited = 0;
+
+        while (positions.hasNext() && visited < BLOCKS_PER_STEP) {
+
+            BlockPos pos = positions.next();
+            BlockState state = stateAt.apply(pos);
+
+            if (state != null) {
+                batch.set(pos, state);
+            }
+
+            visited++;
+
+        }
+
+        batch.apply();
+        return !positions.hasNext();
+
+    }
+
+}